@@ -0,0 +1,82 @@
+package com.smolka.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// головоломки из src/jmh/resources/corpus: одна на строку, n^4 символов, пустая клетка - '0' или '.',
+// числа больше 9 записываются буквами: A - 10, B - 11 и т.д.
+// в группах 9x9 только головоломки, которые распространение ограничений не решает целиком, - иначе мерилось бы только оно.
+// EASY - дерево уровней в несколько ветвей на строку, HARD - сотни ветвей
+public enum Corpus {
+
+    EASY("easy.txt", 3),
+
+    HARD("hard.txt", 3),
+
+    SEVENTEEN_CLUE("17-clue.txt", 3),
+
+    SIXTEEN("16x16.txt", 4),
+
+    TWENTY_FIVE("25x25.txt", 5);
+
+    private final String fileName;
+
+    private final int n;
+
+    private final int size;
+
+    Corpus(String fileName, int n) {
+        this.fileName = fileName;
+        this.n = n;
+        this.size = n * n;
+    }
+
+    public int getN() {
+        return n;
+    }
+
+    public List<int[][]> load() {
+        InputStream stream = Corpus.class.getResourceAsStream("/corpus/" + fileName);
+        if (stream == null) {
+            throw new RuntimeException("Corpus " + fileName + " is not found");
+        }
+
+        List<int[][]> puzzles = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    puzzles.add(parse(line.trim()));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return puzzles;
+    }
+
+    private int[][] parse(String line) {
+        if (line.length() != size * size) {
+            throw new RuntimeException("Wrong puzzle length in " + fileName + ": " + line);
+        }
+
+        int[][] field = new int[size][size];
+        for (int i = 0; i < line.length(); i++) {
+            char symbol = line.charAt(i);
+            int number = symbol == '.' ? 0 : Character.digit(symbol, Character.MAX_RADIX);
+            if (number < 0 || number > size) {
+                throw new RuntimeException("Wrong symbol '" + symbol + "' in " + fileName + ": " + line);
+            }
+            field[i / size][i % size] = number;
+        }
+
+        return field;
+    }
+}
@@ -0,0 +1,76 @@
+package com.smolka.benchmarks;
+
+import com.smolka.impl.SudokuImpl;
+import com.smolka.utils.Position;
+import com.smolka.utils.UniqueSequenceLayeredTree;
+import com.smolka.utils.UniqueSequenceLayeredTreeInitializationParameters;
+import com.smolka.utils.UniqueSequenceLayeredTreeResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+// параметры дерева берутся у SudokuImpl - те же опорные клетки и кандидаты после распространения ограничений, что и в getVariant
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LayeredTreeBenchmark {
+
+    @Param({"EASY", "HARD", "SEVENTEEN_CLUE"})
+    private Corpus corpus;
+
+    private List<UniqueSequenceLayeredTreeInitializationParameters<Position, Integer>> parameters;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        parameters = corpus.load().stream()
+                .map(field -> new SudokuImpl(corpus.getN(), field).getRowParameters())
+                .filter(Objects::nonNull)
+                .toList();
+        // головоломки, которые решает распространение ограничений, дерева не строят - мерить было бы нечего
+        if (parameters.isEmpty()) {
+            throw new RuntimeException("No puzzle of " + corpus + " builds a layered tree");
+        }
+    }
+
+    @Benchmark
+    public UniqueSequenceLayeredTree<Position, Integer> initialize() {
+        UniqueSequenceLayeredTree<Position, Integer> tree = new UniqueSequenceLayeredTree<>();
+        tree.initialize(nextParameters());
+
+        return tree;
+    }
+
+    @Benchmark
+    public UniqueSequenceLayeredTreeResult<Position, Integer> initializeAndGetResult() {
+        UniqueSequenceLayeredTree<Position, Integer> tree = new UniqueSequenceLayeredTree<>();
+        if (!tree.initialize(nextParameters())) {
+            return null;
+        }
+
+        return tree.getResult();
+    }
+
+    private UniqueSequenceLayeredTreeInitializationParameters<Position, Integer> nextParameters() {
+        UniqueSequenceLayeredTreeInitializationParameters<Position, Integer> result = parameters.get(next);
+        next = next + 1 == parameters.size() ? 0 : next + 1;
+
+        return result;
+    }
+}
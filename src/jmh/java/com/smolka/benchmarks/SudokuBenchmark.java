@@ -0,0 +1,81 @@
+package com.smolka.benchmarks;
+
+import com.smolka.impl.DancingLinksSudokuImpl;
+import com.smolka.impl.SudokuImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// каждый вызов берет следующую головоломку корпуса по кругу, так что результат - среднее по группе сложности.
+// SampleTime дает перцентили задержки, -prof gc - скорость аллокаций
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SudokuBenchmark {
+
+    @Param({"EASY", "HARD", "SEVENTEEN_CLUE", "SIXTEEN", "TWENTY_FIVE"})
+    private Corpus corpus;
+
+    private SudokuImpl[] sudokus;
+
+    private DancingLinksSudokuImpl[] dancingLinksSudokus;
+
+    private int[][][] solutions;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        List<int[][]> puzzles = corpus.load();
+        int n = corpus.getN();
+
+        sudokus = new SudokuImpl[puzzles.size()];
+        dancingLinksSudokus = new DancingLinksSudokuImpl[puzzles.size()];
+        solutions = new int[puzzles.size()][][];
+        for (int i = 0; i < puzzles.size(); i++) {
+            sudokus[i] = new SudokuImpl(n, puzzles.get(i));
+            dancingLinksSudokus[i] = new DancingLinksSudokuImpl(n, puzzles.get(i));
+            solutions[i] = dancingLinksSudokus[i].getVariant();
+            if (solutions[i] == null) {
+                throw new RuntimeException("Puzzle " + i + " of " + corpus + " has no solution");
+            }
+        }
+    }
+
+    @Benchmark
+    public int[][] getVariant() {
+        return sudokus[nextIndex()].getVariant();
+    }
+
+    @Benchmark
+    public int[][] dancingLinksGetVariant() {
+        return dancingLinksSudokus[nextIndex()].getVariant();
+    }
+
+    @Benchmark
+    public boolean checkVariant() {
+        int index = nextIndex();
+        return sudokus[index].checkVariant(solutions[index]);
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == sudokus.length ? 0 : index + 1;
+
+        return index;
+    }
+}
@@ -0,0 +1,51 @@
+package com.smolka.benchmarks;
+
+import com.smolka.utils.VariantsUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+// перебор вариантов одной строки: keysCount пустых клеток, на каждую все keysCount чисел - худший случай, keysCount! вариантов
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VariantsUtilsBenchmark {
+
+    @Param({"5", "7", "9"})
+    private int keysCount;
+
+    private Map<Integer, Set<Integer>> keyValuesMap;
+
+    @Setup
+    public void setUp() {
+        Set<Integer> values = IntStream.rangeClosed(1, keysCount).boxed().collect(Collectors.toSet());
+        keyValuesMap = new LinkedHashMap<>();
+        for (int key = 0; key < keysCount; key++) {
+            keyValuesMap.put(key, values);
+        }
+    }
+
+    @Benchmark
+    public List<Map<Integer, Integer>> getAllVariants() {
+        return VariantsUtils.getAllVariants(keyValuesMap);
+    }
+}
@@ -0,0 +1,30 @@
+package com.smolka;
+
+public record SolveResult(Status status, int[][] solution) {
+
+    public static SolveResult solved(int[][] solution) {
+        return new SolveResult(Status.SOLVED, solution);
+    }
+
+    public static SolveResult unsolvable() {
+        return new SolveResult(Status.UNSOLVABLE, null);
+    }
+
+    public static SolveResult budgetExceeded() {
+        return new SolveResult(Status.BUDGET_EXCEEDED, null);
+    }
+
+    public boolean isSolved() {
+        return status == Status.SOLVED;
+    }
+
+    public enum Status {
+
+        SOLVED,
+
+        UNSOLVABLE,
+
+        // решение прервано по времени, числу шагов или прерыванию потока; есть ли решение - неизвестно
+        BUDGET_EXCEEDED
+    }
+}
@@ -1,8 +1,33 @@
 package com.smolka;
 
+import com.smolka.utils.Hint;
+import com.smolka.utils.SolverBudget;
+
+import java.time.Duration;
+import java.util.List;
+
 public interface Sudoku {
 
     int[][] getVariant();
 
+    // бюджет одноразовый - на каждый вызов нужен новый
+    SolveResult getVariant(SolverBudget budget);
+
+    default SolveResult getVariant(Duration timeout) {
+        return getVariant(SolverBudget.ofTimeout(timeout));
+    }
+
+    // число решений, но не больше limit - перебор останавливается, как только найдено limit решений
+    int countSolutions(int limit);
+
+    default boolean hasUniqueSolution() {
+        return countSolutions(2) == 1;
+    }
+
+    // следующее число, которое можно поставить логикой, без решения всего поля; null - без перебора не продвинуться
+    Hint hint();
+
     boolean checkVariant(int[][] variant);
+
+    boolean[] checkVariants(List<int[][]> variants);
 }
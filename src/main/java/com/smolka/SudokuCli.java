@@ -0,0 +1,78 @@
+package com.smolka;
+
+import com.smolka.impl.SudokuBatchSolver;
+import com.smolka.utils.PuzzleReader;
+import com.smolka.utils.PuzzleWriter;
+
+import java.io.FileOutputStream;
+import java.io.FileDescriptor;
+import java.nio.file.Path;
+
+// java -jar sudoku-public.jar [-t threads] [file | -]
+// читает головоломки из файла или stdin (текст или упакованный формат, см. PuzzleReader), решает их на пуле потоков
+// и пишет решения в stdout в том же формате и в том же порядке. нерешаемые головоломки выводятся пустыми полями,
+// итог печатается в stderr
+public class SudokuCli {
+
+    private static final String USAGE = "Usage: java -jar sudoku-public.jar [-t threads] [file | -]";
+
+    public static void main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        String file = null;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("-t") && i + 1 < args.length) {
+                threads = parseThreads(args[++i]);
+            } else if (arg.equals("-h") || arg.equals("--help")) {
+                System.err.println(USAGE);
+                return;
+            } else if (file == null && (arg.equals("-") || !arg.startsWith("-"))) {
+                file = arg;
+            } else {
+                exitWithUsage("Unexpected argument " + arg);
+            }
+        }
+
+        long startTime = System.nanoTime();
+        try (PuzzleReader reader = file == null || file.equals("-") ? PuzzleReader.open(System.in) : PuzzleReader.open(Path.of(file));
+             PuzzleWriter writer = new PuzzleWriter(new FileOutputStream(FileDescriptor.out), reader.getFormat(), reader.getN());
+             SudokuBatchSolver solver = new SudokuBatchSolver(reader.getN(), threads)) {
+            long unsolvedCount = solver.solve(reader, writer);
+
+            long millis = (System.nanoTime() - startTime) / 1_000_000;
+            System.err.printf("Solved %d of %d puzzles in %d ms%n", reader.getReadCount() - unsolvedCount, reader.getReadCount(), millis);
+        } catch (RuntimeException e) {
+            // нет файла, битая строка, ошибка ввода-вывода - сообщение вместо трассы стека, как и для неверных аргументов
+            exitWithUsage(describe(e));
+        }
+    }
+
+    // ошибки стадий конвейера приходят обернутыми - показывается исходная
+    private static String describe(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+
+        return cause instanceof RuntimeException && cause.getMessage() != null ? cause.getMessage() : cause.toString();
+    }
+
+    private static int parseThreads(String value) {
+        try {
+            int threads = Integer.parseInt(value);
+            if (threads > 0) {
+                return threads;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        exitWithUsage("Wrong threads count " + value);
+
+        return -1;
+    }
+
+    private static void exitWithUsage(String message) {
+        System.err.println(message);
+        System.err.println(USAGE);
+        System.exit(1);
+    }
+}
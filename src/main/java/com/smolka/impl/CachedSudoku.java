@@ -0,0 +1,62 @@
+package com.smolka.impl;
+
+import com.smolka.SolveResult;
+import com.smolka.Sudoku;
+import com.smolka.utils.Hint;
+import com.smolka.utils.SolverBudget;
+
+import java.util.List;
+
+// getVariant сначала ищет решение изоморфной головоломки в общем SolutionCache и только при промахе вызывает delegate.
+// остальные методы идут прямо в delegate
+public class CachedSudoku implements Sudoku {
+
+    private final int n;
+
+    private final int[][] field;
+
+    private final Sudoku delegate;
+
+    private final SolutionCache cache;
+
+    public CachedSudoku(int n, int[][] field, SolutionCache cache) {
+        this(n, field, new SudokuImpl(n, field), cache);
+    }
+
+    public CachedSudoku(int n, int[][] field, Sudoku delegate, SolutionCache cache) {
+        this.n = n;
+        this.field = field;
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Override
+    public int[][] getVariant() {
+        return getVariant(SolverBudget.unlimited()).solution();
+    }
+
+    @Override
+    public SolveResult getVariant(SolverBudget budget) {
+        return cache.getOrSolve(n, field, () -> delegate.getVariant(budget));
+    }
+
+    @Override
+    public int countSolutions(int limit) {
+        return delegate.countSolutions(limit);
+    }
+
+    @Override
+    public Hint hint() {
+        return delegate.hint();
+    }
+
+    @Override
+    public boolean checkVariant(int[][] variant) {
+        return delegate.checkVariant(variant);
+    }
+
+    @Override
+    public boolean[] checkVariants(List<int[][]> variants) {
+        return delegate.checkVariants(variants);
+    }
+}
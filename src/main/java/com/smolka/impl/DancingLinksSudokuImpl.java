@@ -0,0 +1,105 @@
+package com.smolka.impl;
+
+import com.smolka.SolveResult;
+import com.smolka.Sudoku;
+import com.smolka.utils.CandidateGrid;
+import com.smolka.utils.CandidatePropagation;
+import com.smolka.utils.DancingLinks;
+import com.smolka.utils.Hint;
+import com.smolka.utils.SolverBudget;
+import com.smolka.utils.SolverBudgetExceededException;
+import com.smolka.utils.VariantValidator;
+
+import java.util.List;
+
+public class DancingLinksSudokuImpl implements Sudoku {
+
+    private final int n;
+
+    private final int sqrN;
+
+    private final int[][] field;
+
+    // матрица точного покрытия и буферы создаются один раз и переиспользуются между вызовами
+    private final DancingLinks dancingLinks;
+
+    private final VariantValidator variantValidator;
+
+    private final int[] cells;
+
+    private final int[] solution;
+
+    public DancingLinksSudokuImpl(int n, int[][] field) {
+        assert field.length != 0;
+        for (int[] row : field) {
+            assert row.length == field.length;
+        }
+        this.n = n;
+        this.field = field;
+        this.sqrN = n * n;
+        assert field.length == sqrN;
+
+        this.dancingLinks = new DancingLinks(n);
+        this.variantValidator = new VariantValidator(n, field);
+        this.cells = new int[sqrN * sqrN];
+        this.solution = new int[sqrN * sqrN];
+    }
+
+    @Override
+    public int[][] getVariant() {
+        return getVariant(SolverBudget.unlimited()).solution();
+    }
+
+    @Override
+    public synchronized SolveResult getVariant(SolverBudget budget) {
+        for (int row = 0; row < sqrN; row++) {
+            System.arraycopy(field[row], 0, cells, row * sqrN, sqrN);
+        }
+
+        try {
+            if (dancingLinks.solve(cells, null, solution, 1, budget) == 0) {
+                return SolveResult.unsolvable();
+            }
+        } catch (SolverBudgetExceededException e) {
+            return SolveResult.budgetExceeded();
+        }
+
+        int[][] result = new int[sqrN][sqrN];
+        for (int row = 0; row < sqrN; row++) {
+            System.arraycopy(solution, row * sqrN, result[row], 0, sqrN);
+        }
+
+        return SolveResult.solved(result);
+    }
+
+    @Override
+    public synchronized int countSolutions(int limit) {
+        if (limit <= 0) {
+            return 0;
+        }
+        for (int row = 0; row < sqrN; row++) {
+            System.arraycopy(field[row], 0, cells, row * sqrN, sqrN);
+        }
+
+        return dancingLinks.solve(cells, null, limit);
+    }
+
+    @Override
+    public synchronized Hint hint() {
+        for (int row = 0; row < sqrN; row++) {
+            System.arraycopy(field[row], 0, cells, row * sqrN, sqrN);
+        }
+
+        return new CandidatePropagation(CandidateGrid.of(n, cells)).nextHint();
+    }
+
+    @Override
+    public boolean checkVariant(int[][] variant) {
+        return variantValidator.check(variant);
+    }
+
+    @Override
+    public boolean[] checkVariants(List<int[][]> variants) {
+        return variantValidator.checkAll(variants);
+    }
+}
@@ -0,0 +1,216 @@
+package com.smolka.impl;
+
+import com.smolka.SolveResult;
+import com.smolka.utils.CanonicalForm;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// решения головоломок с точностью до изоморфизма, не больше maxSize записей. поиск канонической формы дороже решения
+// большинства головоломок, поэтому сначала сравниваются дешевые инварианты CanonicalForm.invariants: первая головоломка
+// с такими инвариантами хранится как есть, и только при совпадении инвариантов обе переводятся в каноническую форму.
+// записи разложены по полосам со своей блокировкой и своим LRU, поэтому потоки, попавшие в разные полосы, не ждут друг друга;
+// вытесняется давно не использованная запись своей полосы. хранятся и нерешаемые головоломки; превышение бюджета не кэшируется
+public class SolutionCache {
+
+    private static final int MAX_STRIPES = 16;
+
+    // меньше записей на полосу - LRU по полосам слишком далек от общего
+    private static final int MIN_STRIPE_SIZE = 64;
+
+    // маркер нерешаемой головоломки
+    private static final int[] UNSOLVABLE = new int[0];
+
+    // инварианты, головоломка с которыми уже переведена в каноническую форму
+    private static final Object CANONICAL = new Object();
+
+    private final int maxSize;
+
+    private final Stripe[] stripes;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    public SolutionCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new RuntimeException("Wrong cache size " + maxSize);
+        }
+        this.maxSize = maxSize;
+        int stripesCount = Integer.highestOneBit(Math.max(1, Math.min(MAX_STRIPES, maxSize / MIN_STRIPE_SIZE)));
+        this.stripes = new Stripe[stripesCount];
+        for (int i = 0; i < stripesCount; i++) {
+            stripes[i] = new Stripe(maxSize / stripesCount);
+        }
+    }
+
+    // решение из кэша или от solver, если в кэше нет ни этой головоломки, ни изоморфной ей
+    public SolveResult getOrSolve(int n, int[][] field, Supplier<SolveResult> solver) {
+        InvariantsKey invariantsKey = new InvariantsKey(n, CanonicalForm.invariants(n, field));
+        Object slot = get(invariantsKey);
+        if (slot == null) {
+            misses.increment();
+            SolveResult result = solver.get();
+            if (result.status() != SolveResult.Status.BUDGET_EXCEEDED) {
+                put(invariantsKey, new Pending(copyOf(field), result.isSolved() ? copyOf(result.solution()) : null));
+            }
+            return result;
+        }
+        if (slot instanceof Pending pending && pending.matches(field)) {
+            hits.increment();
+            return pending.toResult();
+        }
+
+        if (slot instanceof Pending pending) {
+            CanonicalForm pendingForm = CanonicalForm.of(n, pending.field());
+            put(new Key(n, pendingForm.getCells()), pending.solution() == null ? UNSOLVABLE : pendingForm.toCanonical(pending.solution()));
+            put(invariantsKey, CANONICAL);
+        }
+
+        CanonicalForm form = CanonicalForm.of(n, field);
+        Key key = new Key(n, form.getCells());
+        int[] solution = (int[]) get(key);
+        if (solution != null) {
+            hits.increment();
+            return solution == UNSOLVABLE ? SolveResult.unsolvable() : SolveResult.solved(form.fromCanonical(solution));
+        }
+
+        misses.increment();
+        SolveResult result = solver.get();
+        if (result.status() != SolveResult.Status.BUDGET_EXCEEDED) {
+            put(key, result.isSolved() ? form.toCanonical(result.solution()) : UNSOLVABLE);
+        }
+
+        return result;
+    }
+
+    public int size() {
+        int result = 0;
+        for (Stripe stripe : stripes) {
+            result += stripe.size();
+        }
+
+        return result;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private Object get(Object key) {
+        return stripeFor(key).get(key);
+    }
+
+    private void put(Object key, Object value) {
+        stripeFor(key).put(key, value);
+    }
+
+    private Stripe stripeFor(Object key) {
+        int hash = key.hashCode();
+
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    private static int[][] copyOf(int[][] field) {
+        int[][] copy = new int[field.length][];
+        for (int row = 0; row < field.length; row++) {
+            copy[row] = field[row].clone();
+        }
+
+        return copy;
+    }
+
+    private static class Stripe {
+
+        private final Lock lock = new ReentrantLock();
+
+        private final Map<Object, Object> entries;
+
+        Stripe(int capacity) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        Object get(Object key) {
+            lock.lock();
+            try {
+                return entries.get(key);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void put(Object key, Object value) {
+            lock.lock();
+            try {
+                entries.put(key, value);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int size() {
+            lock.lock();
+            try {
+                return entries.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // головоломка, которая пока одна со своими инвариантами; solution null - нерешаема
+    private record Pending(int[][] field, int[][] solution) {
+
+        boolean matches(int[][] other) {
+            return Arrays.deepEquals(field, other);
+        }
+
+        SolveResult toResult() {
+            return solution == null ? SolveResult.unsolvable() : SolveResult.solved(copyOf(solution));
+        }
+    }
+
+    private record InvariantsKey(int n, int[] invariants) {
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof InvariantsKey other && n == other.n && Arrays.equals(invariants, other.invariants);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * n + Arrays.hashCode(invariants);
+        }
+    }
+
+    private record Key(int n, int[] cells) {
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && n == other.n && Arrays.equals(cells, other.cells);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * n + Arrays.hashCode(cells);
+        }
+    }
+}
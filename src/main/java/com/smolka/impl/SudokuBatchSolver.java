@@ -0,0 +1,393 @@
+package com.smolka.impl;
+
+import com.smolka.utils.DancingLinks;
+import com.smolka.utils.PuzzleReader;
+import com.smolka.utils.PuzzleWriter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+public class SudokuBatchSolver implements AutoCloseable {
+
+    // сколько головоломок воркер забирает из общего источника за один захват блокировки
+    private static final int CHUNK_SIZE = 64;
+
+    // сколько пачек на воркера одновременно в работе у конвейера; ограничивает память и буфер переупорядочивания
+    private static final int PIPELINE_CHUNKS_PER_WORKER = 4;
+
+    private final int n;
+
+    private final int sqrN;
+
+    private final int parallelism;
+
+    private final ExecutorService executor;
+
+    // у каждого потока пула своя матрица точного покрытия и буферы, они живут все время жизни пула
+    private final ThreadLocal<Workspace> workspaces;
+
+    public SudokuBatchSolver(int n) {
+        this(n, Runtime.getRuntime().availableProcessors());
+    }
+
+    public SudokuBatchSolver(int n, int parallelism) {
+        assert parallelism > 0;
+        this.n = n;
+        this.sqrN = n * n;
+        this.parallelism = parallelism;
+        this.executor = Executors.newFixedThreadPool(parallelism);
+        this.workspaces = ThreadLocal.withInitial(Workspace::new);
+    }
+
+    public List<int[][]> solveAll(List<int[][]> puzzles) {
+        int[][][] solutions = new int[puzzles.size()][][];
+        solve(puzzles.iterator(), result -> solutions[(int) result.index()] = result.solution());
+
+        return Arrays.asList(solutions);
+    }
+
+    public void solve(Stream<int[][]> puzzles, Consumer<Result> consumer) {
+        solve(puzzles.iterator(), consumer);
+    }
+
+    // блокирует до решения всех головоломок; consumer вызывается из потоков пула в произвольном порядке,
+    // поэтому каждый результат помечен номером головоломки во входной последовательности
+    public void solve(Iterator<int[][]> puzzles, Consumer<Result> consumer) {
+        solve(new IteratorSource(puzzles), consumer);
+    }
+
+    // головоломки декодируются из файла сразу в плоские буферы воркеров; reader закрывает вызывающий
+    public void solve(PuzzleReader puzzles, Consumer<Result> consumer) {
+        if (puzzles.getN() != n) {
+            throw new RuntimeException("Puzzles of size " + puzzles.getN() + " can't be solved by batch solver of size " + n);
+        }
+        solve(new ReaderSource(puzzles), consumer);
+    }
+
+    // конвейер: отдельный поток читает пачки головоломок в буферы из пула, воркеры решают их на месте,
+    // вызывающий поток пишет решения в порядке входа. стадии связаны ограниченными очередями, а буферов фиксированное
+    // число, поэтому память не растет с размером входа. нерешаемые головоломки пишутся пустыми полями, возвращается их количество
+    public long solve(PuzzleReader puzzles, PuzzleWriter solutions) {
+        if (puzzles.getN() != n || solutions.getN() != n) {
+            throw new RuntimeException("Puzzles of size " + puzzles.getN() + " can't be solved by batch solver of size " + n);
+        }
+
+        int chunksCount = parallelism * PIPELINE_CHUNKS_PER_WORKER;
+        BlockingQueue<Chunk> free = new ArrayBlockingQueue<>(chunksCount);
+        // в очередях кроме пачек бывают маркеры остановки воркеров и маркеры ошибок
+        BlockingQueue<Chunk> toSolve = new ArrayBlockingQueue<>(chunksCount + parallelism);
+        BlockingQueue<Chunk> solved = new ArrayBlockingQueue<>(chunksCount + parallelism + 1);
+        for (int i = 0; i < chunksCount; i++) {
+            free.add(new Chunk(CHUNK_SIZE, sqrN * sqrN));
+        }
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread reader = new Thread(() -> readChunks(puzzles, free, toSolve, solved, failure), "sudoku-puzzle-reader");
+        reader.setDaemon(true);
+        reader.start();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < parallelism; i++) {
+            futures.add(executor.submit(() -> solveChunks(toSolve, solved, failure)));
+        }
+
+        boolean completed = false;
+        try {
+            long unsolvedCount = writeChunks(solutions, chunksCount, free, solved, failure);
+            completed = true;
+
+            return unsolvedCount;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Batch solving was interrupted", e);
+        } finally {
+            if (!completed) {
+                reader.interrupt();
+                futures.forEach(future -> future.cancel(true));
+            }
+        }
+    }
+
+    private void readChunks(PuzzleReader puzzles, BlockingQueue<Chunk> free, BlockingQueue<Chunk> toSolve,
+                            BlockingQueue<Chunk> solved, AtomicReference<Throwable> failure) {
+        try {
+            long sequence = 0;
+            while (true) {
+                Chunk chunk = free.take();
+                chunk.sequence = sequence++;
+                chunk.count = 0;
+                while (chunk.count < CHUNK_SIZE && puzzles.next(chunk.cells[chunk.count])) {
+                    chunk.count++;
+                }
+                if (chunk.count == 0) {
+                    // пустая пачка - конец входа, идет сразу писателю
+                    solved.put(chunk);
+                    break;
+                }
+                toSolve.put(chunk);
+            }
+            for (int i = 0; i < parallelism; i++) {
+                toSolve.put(Chunk.STOP);
+            }
+        } catch (InterruptedException ignored) {
+            // конвейер остановлен писателем
+        } catch (Throwable e) {
+            // и Error (assert, переполнение стека, нехватка памяти): иначе писатель ждал бы пачку вечно
+            failure.compareAndSet(null, e);
+            solved.offer(Chunk.FAILED);
+        }
+    }
+
+    private void solveChunks(BlockingQueue<Chunk> toSolve, BlockingQueue<Chunk> solved, AtomicReference<Throwable> failure) {
+        try {
+            Workspace workspace = workspaces.get();
+            while (true) {
+                Chunk chunk = toSolve.take();
+                if (chunk == Chunk.STOP) {
+                    return;
+                }
+                chunk.unsolvedCount = 0;
+                for (int i = 0; i < chunk.count; i++) {
+                    if (!workspace.solveInPlace(chunk.cells[i])) {
+                        chunk.unsolvedCount++;
+                    }
+                }
+                solved.put(chunk);
+            }
+        } catch (InterruptedException ignored) {
+            // конвейер остановлен писателем
+        } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+            solved.offer(Chunk.FAILED);
+        }
+    }
+
+    // пачки приходят в произвольном порядке; в работе их не больше chunksCount, поэтому слот sequence % chunksCount свободен
+    private long writeChunks(PuzzleWriter solutions, int chunksCount, BlockingQueue<Chunk> free, BlockingQueue<Chunk> solved,
+                             AtomicReference<Throwable> failure) throws InterruptedException {
+        Chunk[] pending = new Chunk[chunksCount];
+        long nextSequence = 0;
+        long unsolvedCount = 0;
+
+        while (true) {
+            Chunk chunk = solved.poll();
+            if (chunk == null) {
+                // пока ждем следующую пачку, уже готовые решения уходят дальше по конвейеру
+                solutions.flush();
+                chunk = solved.take();
+            }
+            if (chunk == Chunk.FAILED) {
+                throw new RuntimeException("Batch solving failed", failure.get());
+            }
+            pending[(int) (chunk.sequence % chunksCount)] = chunk;
+
+            int slot = (int) (nextSequence % chunksCount);
+            while (pending[slot] != null) {
+                Chunk next = pending[slot];
+                pending[slot] = null;
+                if (next.count == 0) {
+                    solutions.flush();
+                    return unsolvedCount;
+                }
+                for (int i = 0; i < next.count; i++) {
+                    solutions.write(next.cells[i]);
+                }
+                unsolvedCount += next.unsolvedCount;
+                free.put(next);
+                nextSequence++;
+                slot = (int) (nextSequence % chunksCount);
+            }
+        }
+    }
+
+    private void solve(PuzzleSource source, Consumer<Result> consumer) {
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < parallelism; i++) {
+            futures.add(executor.submit(() -> solveFromSource(source, consumer)));
+        }
+
+        RuntimeException failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                source.close();
+                failure = new RuntimeException("Batch solving was interrupted", e);
+            } catch (ExecutionException e) {
+                source.close();
+                if (failure == null) {
+                    failure = new RuntimeException("Batch solving failed", e.getCause());
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void solveFromSource(PuzzleSource source, Consumer<Result> consumer) {
+        Workspace workspace = workspaces.get();
+        int[][] chunk = new int[CHUNK_SIZE][sqrN * sqrN];
+
+        while (true) {
+            long firstIndex;
+            int count;
+            synchronized (source) {
+                firstIndex = source.getNextIndex();
+                count = source.fill(chunk);
+            }
+            if (count == 0) {
+                return;
+            }
+
+            for (int i = 0; i < count; i++) {
+                consumer.accept(new Result(firstIndex + i, workspace.solve(chunk[i])));
+            }
+        }
+    }
+
+    public record Result(long index, int[][] solution) {
+
+        public boolean isSolved() {
+            return solution != null;
+        }
+    }
+
+    // общий для воркеров источник; fill и getNextIndex вызываются под блокировкой источника
+    private abstract static class PuzzleSource {
+
+        private long nextIndex;
+
+        private boolean closed;
+
+        // заполняет буферы chunk клетками следующих головоломок, возвращает их количество
+        abstract int read(int[][] chunk);
+
+        synchronized long getNextIndex() {
+            return nextIndex;
+        }
+
+        synchronized int fill(int[][] chunk) {
+            int count = closed ? 0 : read(chunk);
+            nextIndex += count;
+
+            return count;
+        }
+
+        synchronized void close() {
+            closed = true;
+        }
+    }
+
+    private class IteratorSource extends PuzzleSource {
+
+        private final Iterator<int[][]> puzzles;
+
+        IteratorSource(Iterator<int[][]> puzzles) {
+            this.puzzles = puzzles;
+        }
+
+        @Override
+        int read(int[][] chunk) {
+            int count = 0;
+            while (count < chunk.length && puzzles.hasNext()) {
+                int[][] puzzle = puzzles.next();
+                for (int row = 0; row < sqrN; row++) {
+                    System.arraycopy(puzzle[row], 0, chunk[count], row * sqrN, sqrN);
+                }
+                count++;
+            }
+
+            return count;
+        }
+    }
+
+    private static class ReaderSource extends PuzzleSource {
+
+        private final PuzzleReader puzzles;
+
+        ReaderSource(PuzzleReader puzzles) {
+            this.puzzles = puzzles;
+        }
+
+        @Override
+        int read(int[][] chunk) {
+            int count = 0;
+            while (count < chunk.length && puzzles.next(chunk[count])) {
+                count++;
+            }
+
+            return count;
+        }
+    }
+
+    private static class Chunk {
+
+        // маркер для воркеров: пачек больше не будет
+        static final Chunk STOP = new Chunk(0, 0);
+
+        // маркер для писателя: одна из стадий упала
+        static final Chunk FAILED = new Chunk(0, 0);
+
+        // головоломки, после решения - решения; нерешаемые обнуляются
+        final int[][] cells;
+
+        long sequence;
+
+        int count;
+
+        int unsolvedCount;
+
+        Chunk(int size, int cellsCount) {
+            this.cells = new int[size][cellsCount];
+        }
+    }
+
+    private class Workspace {
+
+        private final DancingLinks dancingLinks = new DancingLinks(n);
+
+        private final int[] solution = new int[sqrN * sqrN];
+
+        int[][] solve(int[] cells) {
+            if (dancingLinks.solve(cells, solution, 1) == 0) {
+                return null;
+            }
+
+            int[][] result = new int[sqrN][sqrN];
+            for (int row = 0; row < sqrN; row++) {
+                System.arraycopy(solution, row * sqrN, result[row], 0, sqrN);
+            }
+
+            return result;
+        }
+
+        boolean solveInPlace(int[] cells) {
+            if (dancingLinks.solve(cells, solution, 1) == 0) {
+                Arrays.fill(cells, 0);
+                return false;
+            }
+            System.arraycopy(solution, 0, cells, 0, solution.length);
+
+            return true;
+        }
+    }
+}
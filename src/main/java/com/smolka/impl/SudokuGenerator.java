@@ -0,0 +1,192 @@
+package com.smolka.impl;
+
+import com.smolka.utils.CandidateGrid;
+import com.smolka.utils.CandidatePropagation;
+import com.smolka.utils.DancingLinks;
+import com.smolka.utils.Geometry;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+// генерирует головоломки с единственным решением: случайное заполненное поле, из которого по одной убираются подсказки,
+// пока решение остается единственным. головоломки генерируются параллельно, каждая - из своего зерна,
+// поэтому при одном seed результат повторяется независимо от числа потоков
+public class SudokuGenerator {
+
+    private static final int EMPTY_ELEM = 0;
+
+    // сколько заполненных полей перебирается в поисках сложной головоломки; для 4x4 сложных не бывает вовсе - см. checkDifficulty
+    private static final int MAX_HARD_ATTEMPTS = 1000;
+
+    private final int n;
+
+    private final int sqrN;
+
+    private final long seed;
+
+    private final Geometry geometry;
+
+    // у каждого потока своя матрица точного покрытия и буферы
+    private final ThreadLocal<Workspace> workspaces;
+
+    public SudokuGenerator(int n, long seed) {
+        this.n = n;
+        this.sqrN = n * n;
+        this.seed = seed;
+        this.geometry = Geometry.of(n);
+        this.workspaces = ThreadLocal.withInitial(Workspace::new);
+    }
+
+    // подсказки убираются, пока их больше targetClues; если раньше не остается ни одной, которую можно убрать, головоломка минимальна
+    public Stream<int[][]> generate(long count, int targetClues) {
+        return generate(count, targetClues, Difficulty.ANY);
+    }
+
+    public Stream<int[][]> generate(long count, Difficulty difficulty) {
+        return generate(count, 0, difficulty);
+    }
+
+    // поток упорядочен: головоломка с номером i всегда одна и та же для данного seed
+    public Stream<int[][]> generate(long count, int targetClues, Difficulty difficulty) {
+        checkDifficulty(difficulty);
+
+        return LongStream.range(0, count).parallel().mapToObj(index -> generateOne(index, targetClues, difficulty));
+    }
+
+    public int[][] generateOne(long index, int targetClues, Difficulty difficulty) {
+        checkDifficulty(difficulty);
+        SplittableRandom random = new SplittableRandom(seed ^ (index * 0x9E3779B97F4A7C15L));
+        Workspace workspace = workspaces.get();
+
+        for (int attempt = 0; attempt < MAX_HARD_ATTEMPTS; attempt++) {
+            int[] puzzle = workspace.removeClues(workspace.fillGrid(random), random, targetClues, difficulty);
+            // сложную головоломку можно проверить только в конце - пока подсказок много, логики хватает
+            if (difficulty != Difficulty.HARD || !isSolvedBy(puzzle, Difficulty.MEDIUM)) {
+                return toField(puzzle);
+            }
+        }
+
+        throw new RuntimeException("Can't generate " + difficulty + " puzzle in " + MAX_HARD_ATTEMPTS + " attempts");
+    }
+
+    // в 4x4 распространение ограничений решает любую головоломку - попытки найти сложную заранее обречены
+    private void checkDifficulty(Difficulty difficulty) {
+        if (n == 2 && difficulty == Difficulty.HARD) {
+            throw new IllegalArgumentException("There are no " + difficulty + " puzzles for n = " + n);
+        }
+    }
+
+    private boolean isSolvedBy(int[] puzzle, Difficulty difficulty) {
+        CandidateGrid grid = CandidateGrid.of(n, puzzle);
+        CandidatePropagation propagation = new CandidatePropagation(grid);
+        boolean consistent = difficulty == Difficulty.EASY ? propagation.propagateSingles() : propagation.propagate();
+        if (!consistent) {
+            return false;
+        }
+        for (int cell = 0; cell < puzzle.length; cell++) {
+            if (grid.isEmpty(cell)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private int[][] toField(int[] puzzle) {
+        int[][] field = new int[sqrN][sqrN];
+        for (int row = 0; row < sqrN; row++) {
+            System.arraycopy(puzzle, row * sqrN, field[row], 0, sqrN);
+        }
+
+        return field;
+    }
+
+    public enum Difficulty {
+
+        // без ограничений на логику
+        ANY,
+
+        // решается одиночками
+        EASY,
+
+        // решается распространением ограничений целиком
+        MEDIUM,
+
+        // не решается распространением ограничений - нужен перебор
+        HARD
+    }
+
+    private class Workspace {
+
+        private final DancingLinks dancingLinks = new DancingLinks(n);
+
+        private final int[] cells = new int[geometry.getCellsCount()];
+
+        private final int[] order = new int[geometry.getCellsCount()];
+
+        // квадраты на диагонали не пересекаются ни строками, ни столбцами, поэтому заполняются независимо случайными перестановками;
+        // остальное поле достраивает точное покрытие
+        int[] fillGrid(SplittableRandom random) {
+            int[] solution = new int[geometry.getCellsCount()];
+            do {
+                Arrays.fill(cells, EMPTY_ELEM);
+                for (int i = 0; i < n; i++) {
+                    int[] square = geometry.getSquareCells(i * n + i);
+                    int[] numbers = shuffledNumbers(random);
+                    for (int j = 0; j < sqrN; j++) {
+                        cells[square[j]] = numbers[j];
+                    }
+                }
+            } while (dancingLinks.solve(cells, solution, 1) == 0);
+
+            return solution;
+        }
+
+        int[] removeClues(int[] grid, SplittableRandom random, int targetClues, Difficulty difficulty) {
+            int[] puzzle = grid.clone();
+            int clues = puzzle.length;
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            shuffle(order, random);
+
+            for (int cell : order) {
+                if (clues <= targetClues) {
+                    break;
+                }
+
+                int number = puzzle[cell];
+                puzzle[cell] = EMPTY_ELEM;
+                boolean keepsDifficulty = difficulty == Difficulty.ANY || difficulty == Difficulty.HARD || isSolvedBy(puzzle, difficulty);
+                if (keepsDifficulty && dancingLinks.solve(puzzle, null, 2) == 1) {
+                    clues--;
+                } else {
+                    puzzle[cell] = number;
+                }
+            }
+
+            return puzzle;
+        }
+
+        private int[] shuffledNumbers(SplittableRandom random) {
+            int[] numbers = new int[sqrN];
+            for (int i = 0; i < sqrN; i++) {
+                numbers[i] = i + 1;
+            }
+            shuffle(numbers, random);
+
+            return numbers;
+        }
+
+        private void shuffle(int[] values, SplittableRandom random) {
+            for (int i = values.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int value = values[i];
+                values[i] = values[j];
+                values[j] = value;
+            }
+        }
+    }
+}
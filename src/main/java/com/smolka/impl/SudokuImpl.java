@@ -1,39 +1,62 @@
 package com.smolka.impl;
 
+import com.smolka.SolveResult;
 import com.smolka.Sudoku;
-import com.smolka.utils.Cell;
-import com.smolka.utils.MissedNumberMetaInfo;
+import com.smolka.utils.CandidateGrid;
+import com.smolka.utils.CandidatePropagation;
+import com.smolka.utils.DancingLinks;
+import com.smolka.utils.Geometry;
+import com.smolka.utils.Hint;
 import com.smolka.utils.Position;
-import com.smolka.utils.PositionPotential;
-import com.smolka.utils.PositionUtils;
-import com.smolka.utils.SegmentInfo;
+import com.smolka.utils.SolverBudget;
+import com.smolka.utils.SolverBudgetExceededException;
+import com.smolka.utils.SolverListener;
+import com.smolka.utils.SolverPhase;
 import com.smolka.utils.UniqueSequenceLayeredTree;
 import com.smolka.utils.UniqueSequenceLayeredTreeInitializationParameters;
-import com.smolka.utils.UniqueSequenceLayeredTreeResult;
-import org.apache.commons.lang3.tuple.Pair;
+import com.smolka.utils.VariantValidator;
 
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class SudokuImpl implements Sudoku {
 
-    private static final int EMPTY_ELEM = 0;
+    // каждая ветвь хранит битовые множества совместимых ветвей всех остальных строк (все строки смежны по столбцам),
+    // то есть инверсии дерева занимают сумму b_i * b_j бит по парам строк. при большей оценке (поля 16x16, 25x25, почти пустые поля)
+    // построение не укладывается ни по времени, ни по памяти - тогда решение ищется точным покрытием по оставшимся кандидатам.
+    // 2^21 бит - 256 КБ инверсий и столько же конфликтов при построении; деревья больше и по времени проигрывают точному покрытию
+    public static final long MAX_ESTIMATED_INVERSION_BITS = 1L << 21;
+
+    // до стольких пустых клеток в строке число ее ветвей считается точно, а не оценивается
+    private static final int MAX_EXACT_ROW_CELLS = 12;
+
+    // квадраты проверяются только на собранных вариантах поля, и при слабых ограничениях по строкам их бывает слишком много -
+    // после стольких отвергнутых вариантов обход прекращается и решение ищется точным покрытием
+    private static final int MAX_CHECKED_VARIANTS = 20_000;
 
     private final int n;
 
     private final int sqrN;
 
-    private final int checksum;
-
     private final int[][] field;
 
+    private final Geometry geometry;
+
+    private final VariantValidator variantValidator;
+
+    // null - статистика не собирается
+    private final SolverListener listener;
+
     public SudokuImpl(int n, int[][] field) {
+        this(n, field, null);
+    }
+
+    public SudokuImpl(int n, int[][] field, SolverListener listener) {
         assert field.length != 0;
         for (int[] row : field) {
             assert row.length == field.length;
@@ -41,476 +64,391 @@ public class SudokuImpl implements Sudoku {
         this.n = n;
         this.field = field;
         this.sqrN = n * n;
-        this.checksum = (sqrN * (sqrN + 1)) / 2;
         assert field.length == sqrN;
+        this.geometry = Geometry.of(n);
+        this.variantValidator = new VariantValidator(n, field);
+        this.listener = listener;
     }
 
     @Override
     public int[][] getVariant() {
-        Set<Cell> cells = getCells(this.field);
+        return getVariant(SolverBudget.unlimited()).solution();
+    }
 
-        Map<Position, PositionPotential> positionPotentialMap = createNewPotentialMapForCells(cells);
+    @Override
+    public SolveResult getVariant(SolverBudget budget) {
+        try {
+            int[][] solution = findVariant(budget);
+            return solution == null ? SolveResult.unsolvable() : SolveResult.solved(solution);
+        } catch (SolverBudgetExceededException e) {
+            return SolveResult.budgetExceeded();
+        }
+    }
 
-        Set<Position> positionsToAnalyze = getPositionsForAnalyze(positionPotentialMap);
+    // решения не собираются: после распространения ограничений точное покрытие по оставшимся кандидатам только считает их
+    // и останавливается, как только найдено limit решений
+    @Override
+    public int countSolutions(int limit) {
+        if (limit <= 0) {
+            return 0;
+        }
 
-        UniqueSequenceLayeredTreeInitializationParameters<Position, Integer> rowVariantsInitializingParams = new UniqueSequenceLayeredTreeInitializationParameters<>((p1, p2) -> p1.column() == p2.column());
+        CandidateGrid candidateGrid = CandidateGrid.of(n, this.field);
+        if (!new CandidatePropagation(candidateGrid).propagate()) {
+            return 0;
+        }
 
-        for (Position positionToAnalyze : positionsToAnalyze) {
-            Map<Position, PositionPotential> positionSegment = getSegment(positionToAnalyze, positionPotentialMap);
-            positionSegment.put(positionToAnalyze, positionPotentialMap.get(positionToAnalyze));
+        int[] cells = new int[geometry.getCellsCount()];
+        int[] candidates = new int[geometry.getCellsCount()];
+        fillCellsAndCandidates(candidateGrid, cells, candidates);
 
-            Map<Position, Set<Integer>> positionsByColumnWithPossibleNumbers = positionSegment.entrySet()
-                    .stream()
-                    .filter(p -> Objects.equals(p.getKey().row(), positionToAnalyze.row()))
-                    .collect(Collectors.toMap(Map.Entry::getKey, es -> es.getValue().getPossibleNumbers()));
+        return new DancingLinks(n).solve(cells, candidates, null, limit);
+    }
 
-            rowVariantsInitializingParams.addLayerInitializationInfo(positionToAnalyze, positionsByColumnWithPossibleNumbers);
+    // строится на той же сетке кандидатов, что и решение, но распространение идет только до первой постановки
+    @Override
+    public Hint hint() {
+        return new CandidatePropagation(CandidateGrid.of(n, this.field)).nextHint();
+    }
+
+    private int[][] findVariant(SolverBudget budget) {
+        long phaseStart = startPhase();
+        // один проход по полю: числа, маски строк/столбцов/квадратов и кандидаты свободных клеток
+        CandidateGrid candidateGrid = CandidateGrid.of(n, this.field);
+        endPhase(SolverPhase.CELL_SCAN, phaseStart);
+
+        // до построения дерева отсекаем кандидатов, которые исключаются простой логикой - иначе каждый из них размножает варианты строк
+        phaseStart = startPhase();
+        boolean propagated = new CandidatePropagation(candidateGrid).propagate();
+        endPhase(SolverPhase.CANDIDATE_PROPAGATION, phaseStart);
+        if (!propagated) {
+            return null;
         }
+        int[][] propagatedField = getFieldFromGrid(candidateGrid);
 
-        UniqueSequenceLayeredTree<Position, Integer> rowVariantsTree = new UniqueSequenceLayeredTree<>();
-        boolean rowInitializedCorrectly = rowVariantsTree.initialize(rowVariantsInitializingParams);
+        if (estimateInversionBits(candidateGrid) > MAX_ESTIMATED_INVERSION_BITS) {
+            return solveByDancingLinks(candidateGrid, budget);
+        }
 
-        if (!rowInitializedCorrectly) {
+        phaseStart = startPhase();
+        int[] possibleNumbers = getPossibleNumbers(candidateGrid);
+        endPhase(SolverPhase.POTENTIAL_MAP, phaseStart);
+        if (possibleNumbers == null) {
             return null;
         }
 
-        UniqueSequenceLayeredTreeResult<Position, Integer> resultFromTree = rowVariantsTree.getResult();
-        if (resultFromTree.getAdjacencyGroupResults().isEmpty()) {
+        phaseStart = startPhase();
+        int[] cellsToAnalyze = getCellsForAnalyze(possibleNumbers);
+        endPhase(SolverPhase.ANCHOR_SELECTION, phaseStart);
+        // свободных клеток не осталось - распространение само решило поле
+        if (cellsToAnalyze.length == 0) {
+            return checkVariant(propagatedField) ? propagatedField : null;
+        }
+
+        phaseStart = startPhase();
+        UniqueSequenceLayeredTreeInitializationParameters<Position, Integer> rowVariantsInitializingParams = getRowParameters(cellsToAnalyze, possibleNumbers);
+        endPhase(SolverPhase.LAYER_INIT, phaseStart);
+
+        UniqueSequenceLayeredTree<Position, Integer> rowVariantsTree = new UniqueSequenceLayeredTree<>();
+        rowVariantsTree.setListener(listener);
+        rowVariantsTree.setBudget(budget);
+        boolean rowInitializedCorrectly = rowVariantsTree.initialize(rowVariantsInitializingParams);
+
+        if (!rowInitializedCorrectly) {
             return null;
         }
 
-        // по строкам/столбцам может быть только одна группа смежности уровней
-        int[][] result = null;
-        for (List<Map<Position, Integer>> variants : resultFromTree.getAdjacencyGroupResults().getFirst().getResult()) {
-            int[][] copy = copyOfField(this.field);
+        // по строкам/столбцам может быть только одна группа смежности уровней; корневые ветви обходятся параллельно,
+        // обход останавливается на первом верном варианте
+        AtomicReference<int[][]> result = new AtomicReference<>();
+        AtomicInteger checkedVariants = new AtomicInteger();
+        rowVariantsTree.traverseInParallel((adjacencyGroup, variants) -> {
+            if (checkedVariants.incrementAndGet() > MAX_CHECKED_VARIANTS) {
+                return true;
+            }
+            int[][] copy = copyOfField(propagatedField);
             for (Map<Position, Integer> variantForRow : variants) {
                 fillFieldFromMap(copy, variantForRow);
             }
-            if (checkVariant(copy)) {
-                result = copy;
-                break;
+            long validationStart = startPhase();
+            boolean valid = checkVariant(copy);
+            endPhase(SolverPhase.VALIDATION, validationStart);
+            if (valid) {
+                result.compareAndSet(null, copy);
+                return true;
+            }
+            if (listener != null) {
+                listener.onVariantRejected();
             }
+            return false;
+        });
+
+        if (result.get() == null && checkedVariants.get() > MAX_CHECKED_VARIANTS) {
+            return solveByDancingLinks(candidateGrid, budget);
         }
 
-        return result;
+        return result.get();
     }
 
-    @Override
-    public boolean checkVariant(int[][] variant) {
-        if (variant.length != field.length) {
-            return false;
-        }
-        for (int[] variantRow : variant) {
-            if (variantRow.length != field.length) {
-                return false;
-            }
+    // параметры дерева уровней точно такие, как их строит getVariant; null, если getVariant дерево не строит:
+    // поле противоречиво, решается распространением ограничений целиком или слишком велико для дерева
+    public UniqueSequenceLayeredTreeInitializationParameters<Position, Integer> getRowParameters() {
+        CandidateGrid candidateGrid = CandidateGrid.of(n, this.field);
+        if (!new CandidatePropagation(candidateGrid).propagate() || estimateInversionBits(candidateGrid) > MAX_ESTIMATED_INVERSION_BITS) {
+            return null;
         }
-
-        SudokuImpl variantInSudoku = new SudokuImpl(n, variant);
-
-        for (int i = 0; i < sqrN; i++) {
-            if (isNumbersMissedByCoordinatesInMatrix(getNotEmptyElementsWithCoordinatesForRow(i), variant)
-                    || isNumbersMissedByCoordinatesInMatrix(getNotEmptyElementsWithCoordinatesForColumn(i), variant)
-                    || isNumbersMissedByCoordinatesInMatrix(getNotEmptyElementsWithCoordinatesForSquare(i), variant)) {
-                return false;
-            }
-
-            int sumByRow = variantInSudoku.getNotEmptyElementsWithCoordinatesForRow(i).stream().map(Pair::getKey).reduce(Integer::sum).orElse(0);
-            int sumByColumn = variantInSudoku.getNotEmptyElementsWithCoordinatesForColumn(i).stream().map(Pair::getKey).reduce(Integer::sum).orElse(0);
-            int sumBySquare = variantInSudoku.getNotEmptyElementsWithCoordinatesForSquare(i).stream().map(Pair::getKey).reduce(Integer::sum).orElse(0);
-
-            if (sumByRow != checksum || sumByColumn != checksum || sumBySquare != checksum) {
-                return false;
-            }
+        int[] possibleNumbers = getPossibleNumbers(candidateGrid);
+        if (possibleNumbers == null) {
+            return null;
         }
+        int[] cellsToAnalyze = getCellsForAnalyze(possibleNumbers);
 
-        return true;
+        return cellsToAnalyze.length == 0 ? null : getRowParameters(cellsToAnalyze, possibleNumbers);
     }
 
+    @Override
+    public boolean checkVariant(int[][] variant) {
+        return variantValidator.check(variant);
+    }
 
-    private Set<Position> getPositionsForAnalyze(Map<Position, PositionPotential> positionPotentialMap) {
-        Set<Position> result = new HashSet<>();
-
-        // получаем все свободные строки
-        Set<Integer> rowsToFeel = positionPotentialMap.keySet().stream().map(Position::row).collect(Collectors.toSet());
+    @Override
+    public boolean[] checkVariants(List<int[][]> variants) {
+        return variantValidator.checkAll(variants);
+    }
 
-        // т.к. мы будем проводить манипуляции с мапой, которые не должны отразиться на изначальном объекте - получаем ее копию
-        Map<Position, PositionPotential> positionPositionPotentialCopy = copyOfPotentialMap(positionPotentialMap);
 
-        for (int row : rowsToFeel) {
-            // получаем первую позицию с данной строкой; если таковых нет - доудалялись. придется восстанавливать мапу, откинув только уже выбранные опорные точки.
-            Position firstPositionWithRow = positionPositionPotentialCopy.keySet().stream().filter(p -> p.row() == row).findFirst().orElse(null);
-            if (firstPositionWithRow == null) {
-                positionPositionPotentialCopy = copyOfPotentialMap(positionPotentialMap);
-                for (Position position : result) {
-                    positionPositionPotentialCopy.remove(position);
+    // верхняя оценка размера инверсий в битах: сумма b_i * b_j по упорядоченным парам строк, где b - число ветвей строки
+    private long estimateInversionBits(CandidateGrid candidateGrid) {
+        long result = 0;
+        long branchesSum = 0;
+        int[] candidates = new int[sqrN];
+        for (int row = 0; row < sqrN; row++) {
+            int emptyCount = 0;
+            for (int cell : geometry.getRowCells(row)) {
+                if (candidateGrid.isEmpty(cell)) {
+                    candidates[emptyCount++] = candidateGrid.getCandidates(cell);
                 }
-                firstPositionWithRow = positionPositionPotentialCopy.keySet().stream().filter(p -> p.row() == row).findFirst().orElseThrow();
             }
-
-            // добавляем в результат первую позицию по строке
-            result.add(firstPositionWithRow);
-
-            Set<Position> positionsToDelete = new HashSet<>();
-            positionsToDelete.add(firstPositionWithRow);
-
-            int squareOfPosition = positionPositionPotentialCopy.get(firstPositionWithRow).getSquareIndex();
-
-            // все связанные по квадрату, столбцу или строке позиции убираем из рассмотрения - пока не расставим все точки либо пока не останется места для распределения на следующие строки
-            Position finalFirstPositionWithRow = firstPositionWithRow;
-            Set<Position> connectedPositions = positionPositionPotentialCopy.entrySet().stream().filter(es -> {
-                Position position = es.getKey();
-                PositionPotential positionPotential = es.getValue();
-
-                return position.row() == finalFirstPositionWithRow.row() || position.column() == finalFirstPositionWithRow.column() || positionPotential.getSquareIndex() == squareOfPosition;
-            }).map(Map.Entry::getKey).collect(Collectors.toSet());
-
-            // удаляем
-            positionsToDelete.addAll(connectedPositions);
-
-            for (Position positionToDelete : positionsToDelete) {
-                positionPositionPotentialCopy.remove(positionToDelete);
+            if (emptyCount == 0) {
+                continue;
+            }
+            int missingNumbers = candidateGrid.getFullMask() & ~candidateGrid.getRowMask(row);
+            long branches = estimateRowBranches(candidates, emptyCount, missingNumbers);
+            result += 2 * branches * branchesSum;
+            branchesSum += branches;
+            if (result > MAX_ESTIMATED_INVERSION_BITS) {
+                return result;
             }
         }
 
         return result;
     }
 
-    private Map<Position, PositionPotential> copyOfPotentialMap(Map<Position, PositionPotential> positionPotentialMap) {
-        Map<Position, PositionPotential> copy = new HashMap<>();
-        for (Map.Entry<Position, PositionPotential> entry : positionPotentialMap.entrySet()) {
-            copy.put(entry.getKey(), entry.getValue().safeCopy());
-        }
-
-        return copy;
-    }
-
-    private void fillFieldFromMap(int[][] field, Map<Position, Integer> valuesKeysMap) {
-        if (valuesKeysMap == null) {
-            return;
-        }
+    // ветви строки - расстановки недостающих чисел по ее пустым клеткам, каждая клетка получает своего кандидата.
+    // для коротких строк они считаются точно динамикой по подмножествам уже поставленных чисел,
+    // для длинных - оценка сверху: произведение числа кандидатов клеток, но не больше k!. результат не больше MAX_ESTIMATED_INVERSION_BITS + 1
+    private long estimateRowBranches(int[] candidates, int emptyCount, int missingNumbers) {
+        long limit = MAX_ESTIMATED_INVERSION_BITS + 1;
+        if (emptyCount <= MAX_EXACT_ROW_CELLS && Integer.bitCount(missingNumbers) == emptyCount) {
+            // ways[used] - сколькими способами первые bitCount(used) клеток занимают ровно числа used (в номерах среди недостающих)
+            long[] ways = new long[1 << emptyCount];
+            ways[0] = 1;
+            for (int used = 0; used < ways.length - 1; used++) {
+                if (ways[used] == 0) {
+                    continue;
+                }
+                int free = Integer.compress(candidates[Integer.bitCount(used)], missingNumbers) & ~used;
+                for (int rest = free; rest != 0; rest &= rest - 1) {
+                    int next = used | (rest & -rest);
+                    ways[next] = Math.min(ways[next] + ways[used], limit);
+                }
+            }
 
-        for (Position position : valuesKeysMap.keySet()) {
-            field[position.row()][position.column()] = valuesKeysMap.get(position);
+            return ways[ways.length - 1];
         }
-    }
-
-    private Map<Position, PositionPotential> getSegment(Position position, Map<Position, PositionPotential> positionPotentialMap) {
-        SegmentInfo segment = getPositionSegment(position, positionPotentialMap);
-
-        Set<Position> positionsFromSegment = positionPotentialMap.keySet().stream().filter(segment::positionInSegment).collect(Collectors.toSet());
 
-        Map<Position, PositionPotential> result = new HashMap<>();
-
-        for (Map.Entry<Position, PositionPotential> entry : positionPotentialMap.entrySet()) {
-            Position key = entry.getKey();
-            if (!positionsFromSegment.contains(key)) {
-                continue;
-            }
-            PositionPotential value = entry.getValue();
-
-            result.put(key, value);
+        long product = 1;
+        long permutations = 1;
+        for (int i = 0; i < emptyCount; i++) {
+            product = Math.min(product * Integer.bitCount(candidates[i]), limit);
+            permutations = Math.min(permutations * (i + 1), limit);
         }
 
-        return result;
+        return Math.min(product, permutations);
     }
 
-    private Map<Position, PositionPotential> createNewPotentialMapForCells(Set<Cell> cells) {
-        Set<MissedNumberMetaInfo> missedNumbersMetaInfo = getMissedNumbersMetaInfo(cells);
-        Map<Position, PositionPotential> positionPotentialMap = getMapWithPositionsPotentials(missedNumbersMetaInfo);
-        fillSegmentsForAllPositions(positionPotentialMap);
-
-        return positionPotentialMap;
+    private long startPhase() {
+        return listener == null ? 0 : System.nanoTime();
     }
 
-    private void fillSegmentsForAllPositions(Map<Position, PositionPotential> positionsPotentialMap) {
-        for (Map.Entry<Position, PositionPotential> entry : positionsPotentialMap.entrySet()) {
-            Position position = entry.getKey();
-            PositionPotential positionPotential = entry.getValue();
-
-            positionPotential.setSegment(getPositionSegment(position, positionsPotentialMap));
+    private void endPhase(SolverPhase phase, long phaseStart) {
+        if (listener != null) {
+            listener.onPhase(phase, System.nanoTime() - phaseStart);
         }
     }
 
-    private SegmentInfo getPositionSegment(Position position, Map<Position, PositionPotential> positionsPotentialMap) {
-        Set<Position> positionsForSegment = getPotentialPositionsInRow(positionsPotentialMap, position);
-        positionsForSegment.addAll(getPotentialPositionsInColumn(positionsPotentialMap, position));
-        positionsForSegment.addAll(getPotentialPositionsWithCopiedNumbersInSquare(positionsPotentialMap, position));
-
-        Set<Integer> potentialNumbers = new HashSet<>();
-        positionsForSegment.forEach(pos -> potentialNumbers.addAll(positionsPotentialMap.get(pos).getPossibleNumbers()));
-
-        return new SegmentInfo(position, potentialNumbers, positionsForSegment);
-    }
-
-    private Set<Position> getPotentialPositionsWithCopiedNumbersInSquare(Map<Position, PositionPotential> positionAndPossibleNumbersMap, Position currentPosition) {
-        int squareIndex = getSquareIndexByPosition(currentPosition);
-
-        Set<Position> resultSet = new HashSet<>();
-        for (Map.Entry<Position, PositionPotential> entry : positionAndPossibleNumbersMap.entrySet()) {
-            Position position = entry.getKey();
-            if (!Objects.equals(position, currentPosition) && PositionUtils.positionInSquare(position, squareIndex, n)) {
-                resultSet.add(position);
-            }
+    private int[][] solveByDancingLinks(CandidateGrid candidateGrid, SolverBudget budget) {
+        long phaseStart = startPhase();
+        try {
+            return solveByDancingLinksInternal(candidateGrid, budget);
+        } finally {
+            endPhase(SolverPhase.DANCING_LINKS, phaseStart);
         }
-
-        return resultSet;
     }
 
-    private Set<Position> getPotentialPositionsInColumn(Map<Position, PositionPotential> positionAndPossibleNumbersMap, Position currentPosition) {
-        Set<Position> resultSet = new HashSet<>();
-        for (Map.Entry<Position, PositionPotential> entry : positionAndPossibleNumbersMap.entrySet()) {
-            Position position = entry.getKey();
+    private int[][] solveByDancingLinksInternal(CandidateGrid candidateGrid, SolverBudget budget) {
+        int[] cells = new int[geometry.getCellsCount()];
+        int[] candidates = new int[geometry.getCellsCount()];
+        fillCellsAndCandidates(candidateGrid, cells, candidates);
 
-            if (!Objects.equals(position, currentPosition) && position.column() == currentPosition.column()) {
-                resultSet.add(position);
-            }
+        int[] solution = new int[cells.length];
+        if (new DancingLinks(n).solve(cells, candidates, solution, 1, budget) == 0) {
+            return null;
         }
 
-        return resultSet;
-    }
-
-    private Set<Position> getPotentialPositionsInRow(Map<Position, PositionPotential> positionAndPossibleNumbersMap, Position currentPosition) {
-        Set<Position> resultSet = new HashSet<>();
-        for (Map.Entry<Position, PositionPotential> entry : positionAndPossibleNumbersMap.entrySet()) {
-            Position position = entry.getKey();
-
-            if (!Objects.equals(position, currentPosition) && position.row() == currentPosition.row()) {
-                resultSet.add(position);
-            }
+        int[][] result = new int[sqrN][sqrN];
+        for (int row = 0; row < sqrN; row++) {
+            System.arraycopy(solution, row * sqrN, result[row], 0, sqrN);
         }
 
-        return resultSet;
+        return checkVariant(result) ? result : null;
     }
 
-    private Map<Position, PositionPotential> getMapWithPositionsPotentials(Set<MissedNumberMetaInfo> missedNumbersMetaInfo) {
-        Map<Position, PositionPotential> result = new HashMap<>();
-        for (MissedNumberMetaInfo missedNumberMetaInfo : missedNumbersMetaInfo) {
-            int number = missedNumberMetaInfo.number();
-
-            for (Position position : missedNumberMetaInfo.potentialPositions()) {
-                result.putIfAbsent(position, new PositionPotential(new HashSet<>(), getSquareIndexByPosition(position)));
-                result.get(position).addPossibleNumber(number);
-            }
+    private void fillCellsAndCandidates(CandidateGrid candidateGrid, int[] cells, int[] candidates) {
+        for (int cell = 0; cell < cells.length; cell++) {
+            cells[cell] = candidateGrid.getValue(cell);
+            candidates[cell] = candidateGrid.getCandidates(cell);
         }
-
-        return result;
     }
 
-    private Set<Cell> getCells(int[][] field) {
-        Set<Cell> cells = new HashSet<>();
+    private UniqueSequenceLayeredTreeInitializationParameters<Position, Integer> getRowParameters(int[] cellsToAnalyze, int[] possibleNumbers) {
+        UniqueSequenceLayeredTreeInitializationParameters<Position, Integer> rowVariantsInitializingParams = new UniqueSequenceLayeredTreeInitializationParameters<>((p1, p2) -> p1.column() == p2.column());
 
-        for (int i = 0; i < field.length; i++) {
-            for (int j = 0; j < field[i].length; j++) {
-                int number = field[i][j];
-                cells.add(new Cell(new Position(i, j), number != EMPTY_ELEM ? number : null));
-            }
-        }
+        for (int cellToAnalyze : cellsToAnalyze) {
+            int[] cellSegment = getSegment(cellToAnalyze, possibleNumbers);
 
-        return cells;
-    }
+            Map<Position, Set<Integer>> positionsByColumnWithPossibleNumbers = new HashMap<>();
+            int rowToAnalyze = geometry.getRow(cellToAnalyze);
+            positionsByColumnWithPossibleNumbers.put(toPosition(cellToAnalyze), CandidateGrid.numbersOf(possibleNumbers[cellToAnalyze]));
+            for (int cell : cellSegment) {
+                if (geometry.getRow(cell) == rowToAnalyze) {
+                    positionsByColumnWithPossibleNumbers.put(toPosition(cell), CandidateGrid.numbersOf(possibleNumbers[cell]));
+                }
+            }
 
-    private int[][] copyOfField(int[][] field) {
-        int[][] copy = new int[sqrN][sqrN];
-        for (int i = 0; i < copy.length; i++) {
-            System.arraycopy(field[i], 0, copy[i], 0, copy[i].length);
+            rowVariantsInitializingParams.addLayerInitializationInfo(toPosition(cellToAnalyze), positionsByColumnWithPossibleNumbers);
         }
 
-        return copy;
+        return rowVariantsInitializingParams;
     }
 
-    private Set<MissedNumberMetaInfo> getMissedNumbersMetaInfo(Set<Cell> allCells) {
-        Map<Integer, MissedNumberMetaInfo> map = new HashMap<>();
-
-        for (int i = 0; i < sqrN; i++) {
-            Set<Integer> missedNumbersInRow = getMissedNumbersForRow(i, allCells);
-            Set<Integer> missedNumbersInColumn = getMissedNumbersForColumn(i, allCells);
-            Set<Integer> missedNumbersInSquare = getMissedNumbersForSquare(i, allCells);
-
-            for (int missedNumberInRow : missedNumbersInRow) {
-                map.putIfAbsent(missedNumberInRow, new MissedNumberMetaInfo(missedNumberInRow, new HashSet<>(), new HashSet<>(), new HashSet<>(), new HashSet<>()));
-                MissedNumberMetaInfo missedNumberMetaInfo = map.get(missedNumberInRow);
-                missedNumberMetaInfo.missedInRows().add(i);
+    // по одной опорной клетке на каждую строку со свободными клетками; клетки, связанные с уже выбранными опорными
+    // по строке, столбцу или квадрату, пропускаются, пока в строке есть другие
+    private int[] getCellsForAnalyze(int[] possibleNumbers) {
+        int[] result = new int[sqrN];
+        int count = 0;
+        boolean[] chosen = new boolean[possibleNumbers.length];
+        // т.к. клетки убираются из рассмотрения, а потом могут понадобиться снова - отдельная отметка, исходный массив не меняется
+        boolean[] removed = new boolean[possibleNumbers.length];
+
+        for (int row = 0; row < sqrN; row++) {
+            if (findFirstInRow(row, possibleNumbers, chosen) < 0) {
+                continue;
             }
 
-            for (int missedNumberInColumn : missedNumbersInColumn) {
-                map.putIfAbsent(missedNumberInColumn, new MissedNumberMetaInfo(missedNumberInColumn, new HashSet<>(), new HashSet<>(), new HashSet<>(), new HashSet<>()));
-                MissedNumberMetaInfo missedNumberMetaInfo = map.get(missedNumberInColumn);
-                missedNumberMetaInfo.missedInColumns().add(i);
+            // первая оставшаяся клетка строки; если таковых нет - доудалялись. восстанавливаем, откинув только уже выбранные опорные точки
+            int firstCellWithRow = findFirstInRow(row, possibleNumbers, removed);
+            if (firstCellWithRow < 0) {
+                System.arraycopy(chosen, 0, removed, 0, chosen.length);
+                firstCellWithRow = findFirstInRow(row, possibleNumbers, removed);
             }
 
-            for (int missedNumberInSquare : missedNumbersInSquare) {
-                map.putIfAbsent(missedNumberInSquare, new MissedNumberMetaInfo(missedNumberInSquare, new HashSet<>(), new HashSet<>(), new HashSet<>(), new HashSet<>()));
-                MissedNumberMetaInfo missedNumberMetaInfo = map.get(missedNumberInSquare);
-                missedNumberMetaInfo.missedInSquares().add(i);
-            }
-        }
+            result[count++] = firstCellWithRow;
+            chosen[firstCellWithRow] = true;
 
-        for (MissedNumberMetaInfo metaInfo : map.values()) {
-            Set<Position> potentialPositions = new HashSet<>();
-            for (int row : metaInfo.missedInRows()) {
-                Set<Integer> potentialColumns = getFreeColumnsInRow(row, allCells);
-                potentialColumns.retainAll(metaInfo.missedInColumns());
-                Set<Integer> squaresInRowContains = PositionUtils.squaresInRow(row, n).stream()
-                        .filter(squareIndex -> !metaInfo.missedInSquares().contains(squareIndex))
-                        .collect(Collectors.toSet());
-
-                for (int column : potentialColumns) {
-                    Position potentialPosition = new Position(row, column);
-                    if (PositionUtils.positionInAnySquare(potentialPosition, squaresInRowContains, n)) {
-                        continue;
-                    }
-                    potentialPositions.add(potentialPosition);
-                }
+            // все связанные по квадрату, столбцу или строке клетки убираем из рассмотрения
+            removed[firstCellWithRow] = true;
+            for (int peer : geometry.getPeers(firstCellWithRow)) {
+                removed[peer] = true;
             }
-
-            metaInfo.addPotentialPositions(potentialPositions);
         }
 
-        return new HashSet<>(map.values());
+        return Arrays.copyOf(result, count);
     }
 
-    private Set<Integer> getMissedNumbersForRow(int row, Set<Cell> allCells) {
-        Set<Integer> hints = allCells.stream().filter(cell -> cell.position().row() == row && !cell.isEmpty()).map(Cell::number).collect(Collectors.toSet());
-        return IntStream.range(1, sqrN + 1).filter(e -> !hints.contains(e)).boxed().collect(Collectors.toSet());
-    }
-
-    private Set<Integer> getMissedNumbersForColumn(int column, Set<Cell> allCells) {
-        Set<Integer> hints = allCells.stream().filter(cell -> cell.position().column() == column && !cell.isEmpty()).map(Cell::number).collect(Collectors.toSet());
-        return IntStream.range(1, sqrN + 1).filter(e -> !hints.contains(e)).boxed().collect(Collectors.toSet());
-    }
-
-    private Set<Integer> getMissedNumbersForSquare(int square, Set<Cell> allCells) {
-        Set<Integer> hints = getNotEmptyCellsForSquare(square, allCells).stream().map(Cell::number).collect(Collectors.toSet());
-        return IntStream.range(1, sqrN + 1).filter(e -> !hints.contains(e)).boxed().collect(Collectors.toSet());
-    }
-
-    private Integer getSquareIndexByPosition(Position position) {
-        Set<Integer> squaresByRow = PositionUtils.squaresInRow(position.row(), n);
-        Set<Integer> squaresByColumn = PositionUtils.squaresInColumn(position.column(), n);
-
-        squaresByColumn.retainAll(squaresByRow);
-
-        return squaresByColumn.stream().findFirst().orElse(null);
-    }
-
-
-
-    private Set<Integer> getFreeColumnsInRow(int row, Set<Cell> allCells) {
-        Set<Integer> freeColumns = new HashSet<>();
-        Map<Position, Cell> allCellsAsMap = allCells.stream().collect(Collectors.toMap(Cell::position, v -> v));
-
-        for (int column = 0; column < field.length; column++) {
-            Cell currentCell = allCellsAsMap.get(new Position(row, column));
-
-            if (currentCell.isEmpty()) {
-                freeColumns.add(column);
+    private int findFirstInRow(int row, int[] possibleNumbers, boolean[] skipped) {
+        for (int cell : geometry.getRowCells(row)) {
+            if (possibleNumbers[cell] != 0 && !skipped[cell]) {
+                return cell;
             }
         }
 
-        return freeColumns;
+        return -1;
     }
 
-    private Set<Cell> getNotEmptyCellsForSquare(int squareIndex, Set<Cell> allCells) {
-        Set<Cell> result = new HashSet<>();
-
-        Position startPos = PositionUtils.getStartCoordinatesBySquareIndex(squareIndex, n);
-
-        int fromRow = startPos.row();
-        int fromColumn = startPos.column();
-
-        int toRow = fromRow + n;
-        int toColumn = fromColumn + n;
-
-        Map<Position, Cell> allCellsAsMap = allCells.stream().collect(Collectors.toMap(Cell::position, v -> v));
-
-        for (int k = 1; k <= n; k++) {
-            for (int row = fromRow; row < toRow; row++) {
-                for (int column = fromColumn; column < toColumn; column++) {
-                    Cell currentCell = allCellsAsMap.get(new Position(row, column));
-                    if (!currentCell.isEmpty()) {
-                        result.add(currentCell);
-                    }
-                }
-            }
-
-            fromRow++;
+    private void fillFieldFromMap(int[][] field, Map<Position, Integer> valuesKeysMap) {
+        if (valuesKeysMap == null) {
+            return;
         }
 
-        return result;
+        for (Position position : valuesKeysMap.keySet()) {
+            field[position.row()][position.column()] = valuesKeysMap.get(position);
+        }
     }
 
-    private Set<Pair<Integer, Position>> getNotEmptyElementsWithCoordinatesForSquare(int squareIndex) {
-        Set<Pair<Integer, Position>> result = new HashSet<>();
-        Position startPos = PositionUtils.getStartCoordinatesBySquareIndex(squareIndex, n);
-
-        int fromRow = startPos.row();
-        int fromColumn = startPos.column();
-
-        int toRow = fromRow + n;
-        int toColumn = fromColumn + n;
-
-        for (int k = 1; k <= n; k++) {
-            for (int row = fromRow; row < toRow; row++) {
-                for (int column = fromColumn; column < toColumn; column++) {
-                    int elem = field[row][column];
-                    if (elem != EMPTY_ELEM) {
-                        result.add(Pair.of(elem, new Position(row, column)));
-                    }
-                }
+    // свободные клетки той же строки, столбца и квадрата
+    private int[] getSegment(int cell, int[] possibleNumbers) {
+        int[] peers = geometry.getPeers(cell);
+        int[] result = new int[peers.length];
+        int count = 0;
+        for (int peer : peers) {
+            if (possibleNumbers[peer] != 0) {
+                result[count++] = peer;
             }
-
-            fromRow++;
         }
 
-        return result;
+        return Arrays.copyOf(result, count);
     }
 
-    private Set<Pair<Integer, Position>> getNotEmptyElementsWithCoordinatesForRow(int rowIndex) {
-        assert rowIndex >= 0;
-        assert field.length > rowIndex;
-
-        Set<Pair<Integer, Position>> result = new HashSet<>();
-
-        for (int column = 0; column < field.length; column++) {
-            int elem = field[rowIndex][column];
-            if (elem != EMPTY_ELEM) {
-                result.add(Pair.of(elem, new Position(rowIndex, column)));
+    // маски кандидатов по индексу клетки, у заполненных клеток 0; null, если у пустой клетки кандидатов нет
+    private int[] getPossibleNumbers(CandidateGrid candidateGrid) {
+        int[] result = new int[geometry.getCellsCount()];
+        for (int cell = 0; cell < result.length; cell++) {
+            if (!candidateGrid.isEmpty(cell)) {
+                continue;
+            }
+            int candidates = candidateGrid.getCandidates(cell);
+            // пустой клетке некуда поставить число - вариантов нет
+            if (candidates == 0) {
+                return null;
             }
+            result[cell] = candidates;
         }
 
         return result;
     }
 
-    private Set<Pair<Integer, Position>> getNotEmptyElementsWithCoordinatesForColumn(int colIndex) {
-        assert colIndex >= 0;
-        assert field.length > colIndex;
-
-        Set<Pair<Integer, Position>> result = new HashSet<>();
-        for (int row = 0; row < field.length; row++) {
-            int elem = field[row][colIndex];
-            if (elem != EMPTY_ELEM) {
-                result.add(Pair.of(elem, new Position(row, colIndex)));
+    private int[][] getFieldFromGrid(CandidateGrid candidateGrid) {
+        int[][] result = new int[sqrN][sqrN];
+        for (int row = 0; row < sqrN; row++) {
+            for (int column = 0; column < sqrN; column++) {
+                result[row][column] = candidateGrid.getValue(row, column);
             }
         }
 
         return result;
     }
 
-
-
-    private boolean isNumbersMissedByCoordinatesInMatrix(Set<Pair<Integer, Position>> numbersWithPositions, int[][] matrix) {
-        for (Pair<Integer, Position> numberWithCoordinates : numbersWithPositions) {
-            int number = numberWithCoordinates.getKey();
-            Position pos = numberWithCoordinates.getValue();
-            int row = pos.row();
-            int column = pos.column();
-
-            if (!Objects.equals(matrix[row][column], number)) {
-                return true;
-            }
+    private int[][] copyOfField(int[][] field) {
+        int[][] copy = new int[sqrN][sqrN];
+        for (int i = 0; i < copy.length; i++) {
+            System.arraycopy(field[i], 0, copy[i], 0, copy[i].length);
         }
 
-        return false;
+        return copy;
+    }
+
+    private Position toPosition(int cell) {
+        return Position.of(geometry.getRow(cell), geometry.getColumn(cell));
     }
 }
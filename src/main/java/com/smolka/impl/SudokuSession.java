@@ -0,0 +1,283 @@
+package com.smolka.impl;
+
+import com.smolka.utils.CandidateGrid;
+import com.smolka.utils.CandidatePropagation;
+import com.smolka.utils.DancingLinks;
+import com.smolka.utils.Geometry;
+import com.smolka.utils.Hint;
+
+import java.util.Arrays;
+
+// изменяемое поле для интерактивной игры: кандидаты хранятся между правками, set/clear пересчитывают только клетку и ее соседей.
+// пользователь может поставить конфликтующие числа - они учитываются счетчиками чисел в строках, столбцах и квадратах.
+// "решаемо ли еще" проверяется переиспользуемой матрицей DancingLinks, ответ запоминается до следующей правки. не потокобезопасен
+public class SudokuSession {
+
+    private final int n;
+
+    private final int size;
+
+    private final Geometry geometry;
+
+    private final int fullMask;
+
+    private final int[] values;
+
+    private final boolean[] givens;
+
+    // кандидаты пустых клеток с учетом всех поставленных чисел; у заполненных клеток 0
+    private final int[] candidates;
+
+    // сколько раз число стоит в строке/столбце/квадрате: [unit * size + number - 1], units - как в Geometry.getUnits
+    private final int[] counts;
+
+    // маски чисел, которые стоят в строке/столбце/квадрате хотя бы раз
+    private final int[] unitMasks;
+
+    // пар (группа, число), где число стоит больше одного раза
+    private int conflictsCount;
+
+    // пустых клеток без кандидатов
+    private int deadCellsCount;
+
+    private int emptyCount;
+
+    private final int[] cellUnits = new int[3];
+
+    private final DancingLinks dancingLinks;
+
+    private final int[] solution;
+
+    private boolean solvabilityKnown;
+
+    private boolean solvable;
+
+    public SudokuSession(int n) {
+        this(n, new int[n * n][n * n]);
+    }
+
+    // числа field становятся подсказками, их нельзя менять
+    public SudokuSession(int n, int[][] field) {
+        this.n = n;
+        this.size = n * n;
+        this.geometry = Geometry.of(n);
+        if (size > Integer.SIZE) {
+            throw new RuntimeException("Grid size " + size + " doesn't fit into int mask");
+        }
+        assert field.length == size;
+        this.fullMask = size == Integer.SIZE ? -1 : (1 << size) - 1;
+        this.values = new int[size * size];
+        this.givens = new boolean[size * size];
+        this.candidates = new int[size * size];
+        this.counts = new int[3 * size * size];
+        this.unitMasks = new int[3 * size];
+        this.dancingLinks = new DancingLinks(n);
+        this.solution = new int[size * size];
+        this.emptyCount = size * size;
+
+        Arrays.fill(candidates, fullMask);
+        for (int row = 0; row < size; row++) {
+            assert field[row].length == size;
+            for (int column = 0; column < size; column++) {
+                int number = field[row][column];
+                if (number != 0) {
+                    int cell = geometry.getCell(row, column);
+                    checkNumber(number);
+                    put(cell, number);
+                    givens[cell] = true;
+                }
+            }
+        }
+    }
+
+    // возвращает isConsistent() после правки
+    public boolean set(int row, int column, int number) {
+        int cell = editableCell(row, column);
+        checkNumber(number);
+        if (values[cell] == number) {
+            return isConsistent();
+        }
+
+        if (values[cell] != 0) {
+            remove(cell);
+        }
+        put(cell, number);
+        solvabilityKnown = false;
+
+        return isConsistent();
+    }
+
+    public boolean clear(int row, int column) {
+        int cell = editableCell(row, column);
+        if (values[cell] != 0) {
+            remove(cell);
+            solvabilityKnown = false;
+        }
+
+        return isConsistent();
+    }
+
+    public int getValue(int row, int column) {
+        return values[geometry.getCell(row, column)];
+    }
+
+    public boolean isGiven(int row, int column) {
+        return givens[geometry.getCell(row, column)];
+    }
+
+    // маска кандидатов пустой клетки (бит number - 1), у заполненной 0
+    public int getCandidates(int row, int column) {
+        return candidates[geometry.getCell(row, column)];
+    }
+
+    public boolean hasConflicts() {
+        return conflictsCount != 0;
+    }
+
+    // нет повторов и у каждой пустой клетки есть кандидат - дешевая проверка без перебора
+    public boolean isConsistent() {
+        return conflictsCount == 0 && deadCellsCount == 0;
+    }
+
+    public boolean isSolved() {
+        return emptyCount == 0 && conflictsCount == 0;
+    }
+
+    // можно ли дозаполнить текущее поле, не меняя уже поставленные числа
+    public boolean isSolvable() {
+        if (!solvabilityKnown) {
+            solvable = isConsistent() && dancingLinks.solve(values, candidates, solution, 1) != 0;
+            solvabilityKnown = true;
+        }
+
+        return solvable;
+    }
+
+    // одно из решений текущего поля или null
+    public int[][] getSolution() {
+        if (!isSolvable()) {
+            return null;
+        }
+
+        int[][] result = new int[size][size];
+        for (int row = 0; row < size; row++) {
+            System.arraycopy(solution, row * size, result[row], 0, size);
+        }
+
+        return result;
+    }
+
+    // следующее число для текущего поля; при повторах или пустой клетке без кандидатов подсказки нет
+    public Hint hint() {
+        if (!isConsistent()) {
+            return null;
+        }
+
+        return new CandidatePropagation(CandidateGrid.of(n, values)).nextHint();
+    }
+
+    public int[][] toField() {
+        int[][] result = new int[size][size];
+        for (int row = 0; row < size; row++) {
+            System.arraycopy(values, row * size, result[row], 0, size);
+        }
+
+        return result;
+    }
+
+    public int getN() {
+        return n;
+    }
+
+    private void put(int cell, int number) {
+        int bit = 1 << (number - 1);
+        if (candidates[cell] == 0) {
+            deadCellsCount--;
+        }
+        candidates[cell] = 0;
+        values[cell] = number;
+        emptyCount--;
+        for (int unit : unitsOf(cell)) {
+            int countIndex = unit * size + number - 1;
+            if (++counts[countIndex] == 2) {
+                conflictsCount++;
+            }
+            unitMasks[unit] |= bit;
+        }
+
+        int notBit = ~bit;
+        for (int peer : geometry.getPeers(cell)) {
+            if (values[peer] == 0) {
+                updateCandidates(peer, candidates[peer] & notBit);
+            }
+        }
+    }
+
+    private void remove(int cell) {
+        int number = values[cell];
+        int bit = 1 << (number - 1);
+        values[cell] = 0;
+        emptyCount++;
+        for (int unit : unitsOf(cell)) {
+            int countIndex = unit * size + number - 1;
+            if (--counts[countIndex] == 1) {
+                conflictsCount--;
+            } else if (counts[countIndex] == 0) {
+                unitMasks[unit] &= ~bit;
+            }
+        }
+
+        // вернуть число можно только тем соседям, у которых его нет в других группах - проще пересчитать по маскам
+        candidates[cell] = availableNumbers(cell);
+        if (candidates[cell] == 0) {
+            deadCellsCount++;
+        }
+        for (int peer : geometry.getPeers(cell)) {
+            if (values[peer] == 0) {
+                updateCandidates(peer, availableNumbers(peer));
+            }
+        }
+    }
+
+    private int availableNumbers(int cell) {
+        int used = unitMasks[geometry.getRow(cell)]
+                | unitMasks[size + geometry.getColumn(cell)]
+                | unitMasks[2 * size + geometry.getSquare(cell)];
+
+        return fullMask & ~used;
+    }
+
+    // только для пустых клеток
+    private void updateCandidates(int cell, int mask) {
+        if ((candidates[cell] == 0) != (mask == 0)) {
+            deadCellsCount += mask == 0 ? 1 : -1;
+        }
+        candidates[cell] = mask;
+    }
+
+    private int[] unitsOf(int cell) {
+        cellUnits[0] = geometry.getRow(cell);
+        cellUnits[1] = size + geometry.getColumn(cell);
+        cellUnits[2] = 2 * size + geometry.getSquare(cell);
+
+        return cellUnits;
+    }
+
+    private int editableCell(int row, int column) {
+        if (!geometry.contains(row, column)) {
+            throw new RuntimeException("Wrong position " + row + ", " + column);
+        }
+        int cell = geometry.getCell(row, column);
+        if (givens[cell]) {
+            throw new RuntimeException("Given at " + row + ", " + column + " can't be changed");
+        }
+
+        return cell;
+    }
+
+    private void checkNumber(int number) {
+        if (number < 1 || number > size) {
+            throw new RuntimeException("Wrong number " + number);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.smolka.utils;
+
+public class BitsUtils {
+
+    public static long[] newBits(int bitsCount) {
+        return new long[(bitsCount + Long.SIZE - 1) / Long.SIZE];
+    }
+
+    public static long[] newFullBits(int bitsCount) {
+        long[] bits = newBits(bitsCount);
+        for (int i = 0; i < bitsCount / Long.SIZE; i++) {
+            bits[i] = -1L;
+        }
+        if (bitsCount % Long.SIZE != 0) {
+            bits[bits.length - 1] = (1L << (bitsCount % Long.SIZE)) - 1;
+        }
+
+        return bits;
+    }
+
+    public static void set(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    public static boolean get(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public static void or(long[] target, long[] source) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] |= source[i];
+        }
+    }
+
+    // target = first & second; false, если пересечение пустое
+    public static boolean and(long[] first, long[] second, long[] target) {
+        long any = 0;
+        for (int i = 0; i < target.length; i++) {
+            target[i] = first[i] & second[i];
+            any |= target[i];
+        }
+
+        return any != 0;
+    }
+
+    // target = first & ~second; false, если результат пустой
+    public static boolean andNot(long[] first, long[] second, long[] target) {
+        long any = 0;
+        for (int i = 0; i < target.length; i++) {
+            target[i] = first[i] & ~second[i];
+            any |= target[i];
+        }
+
+        return any != 0;
+    }
+
+    public static int cardinality(long[] bits) {
+        int result = 0;
+        for (long word : bits) {
+            result += Long.bitCount(word);
+        }
+
+        return result;
+    }
+
+    // индекс первого установленного бита начиная с from, -1 если таких нет
+    public static int nextSetBit(long[] bits, int from) {
+        int wordIndex = from >>> 6;
+        if (wordIndex >= bits.length) {
+            return -1;
+        }
+
+        long word = bits[wordIndex] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                return wordIndex * Long.SIZE + Long.numberOfTrailingZeros(word);
+            }
+            if (++wordIndex == bits.length) {
+                return -1;
+            }
+            word = bits[wordIndex];
+        }
+    }
+}
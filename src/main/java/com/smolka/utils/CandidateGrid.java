@@ -0,0 +1,211 @@
+package com.smolka.utils;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+public class CandidateGrid {
+
+    private final int n;
+
+    private final int size;
+
+    private final Geometry geometry;
+
+    private final int fullMask;
+
+    private final int[] values;
+
+    private final int[] candidates;
+
+    private final int[] rowMasks;
+
+    private final int[] columnMasks;
+
+    private final int[] squareMasks;
+
+    public CandidateGrid(int n) {
+        this.n = n;
+        this.size = n * n;
+        this.geometry = Geometry.of(n);
+        if (size > Integer.SIZE) {
+            throw new RuntimeException("Grid size " + size + " doesn't fit into int mask");
+        }
+        this.fullMask = size == Integer.SIZE ? -1 : (1 << size) - 1;
+        this.values = new int[size * size];
+        this.candidates = new int[size * size];
+        this.rowMasks = new int[size];
+        this.columnMasks = new int[size];
+        this.squareMasks = new int[size];
+
+        Arrays.fill(candidates, fullMask);
+    }
+
+    private CandidateGrid(CandidateGrid other) {
+        this.n = other.n;
+        this.size = other.size;
+        this.geometry = other.geometry;
+        this.fullMask = other.fullMask;
+        this.values = other.values.clone();
+        this.candidates = other.candidates.clone();
+        this.rowMasks = other.rowMasks.clone();
+        this.columnMasks = other.columnMasks.clone();
+        this.squareMasks = other.squareMasks.clone();
+    }
+
+    // поле построчно в одномерном массиве, 0 - пустая клетка
+    public static CandidateGrid of(int n, int[] cells) {
+        CandidateGrid grid = new CandidateGrid(n);
+        for (int cell = 0; cell < cells.length; cell++) {
+            if (cells[cell] != 0) {
+                grid.occupy(cell, cells[cell]);
+            }
+        }
+        grid.fillCandidatesFromMasks();
+
+        return grid;
+    }
+
+    public static CandidateGrid of(int n, int[][] field) {
+        CandidateGrid grid = new CandidateGrid(n);
+        int size = grid.size;
+        for (int row = 0; row < size; row++) {
+            int[] fieldRow = field[row];
+            for (int column = 0; column < size; column++) {
+                if (fieldRow[column] != 0) {
+                    grid.occupy(row * size + column, fieldRow[column]);
+                }
+            }
+        }
+        grid.fillCandidatesFromMasks();
+
+        return grid;
+    }
+
+    public static int bitOf(int number) {
+        return 1 << (number - 1);
+    }
+
+    public static int numberOf(int bit) {
+        return Integer.numberOfTrailingZeros(bit) + 1;
+    }
+
+    public static Set<Integer> numbersOf(int mask) {
+        Set<Integer> result = new HashSet<>();
+        for (int rest = mask; rest != 0; rest &= rest - 1) {
+            result.add(numberOf(rest & -rest));
+        }
+
+        return result;
+    }
+
+    public CandidateGrid copy() {
+        return new CandidateGrid(this);
+    }
+
+    public void place(int row, int column, int number) {
+        place(index(row, column), number);
+    }
+
+    // ставит число в клетку, убирая его из кандидатов всех клеток той же строки, столбца и квадрата
+    public void place(int cell, int number) {
+        int bit = bitOf(number);
+
+        values[cell] = number;
+        candidates[cell] = 0;
+        rowMasks[geometry.getRow(cell)] |= bit;
+        columnMasks[geometry.getColumn(cell)] |= bit;
+        squareMasks[geometry.getSquare(cell)] |= bit;
+
+        int notBit = ~bit;
+        for (int peer : geometry.getPeers(cell)) {
+            candidates[peer] &= notBit;
+        }
+    }
+
+    // только значение и маски групп, без обхода соседей - кандидаты потом считаются один раз по маскам
+    private void occupy(int cell, int number) {
+        int bit = bitOf(number);
+
+        values[cell] = number;
+        rowMasks[geometry.getRow(cell)] |= bit;
+        columnMasks[geometry.getColumn(cell)] |= bit;
+        squareMasks[geometry.getSquare(cell)] |= bit;
+    }
+
+    private void fillCandidatesFromMasks() {
+        for (int cell = 0; cell < candidates.length; cell++) {
+            candidates[cell] = values[cell] != 0
+                    ? 0
+                    : fullMask & ~(rowMasks[geometry.getRow(cell)] | columnMasks[geometry.getColumn(cell)] | squareMasks[geometry.getSquare(cell)]);
+        }
+    }
+
+    public void removeCandidates(int row, int column, int mask) {
+        candidates[index(row, column)] &= ~mask;
+    }
+
+    public void removeCandidates(int cell, int mask) {
+        candidates[cell] &= ~mask;
+    }
+
+    public int getCandidates(int cell) {
+        return candidates[cell];
+    }
+
+    public int getValue(int cell) {
+        return values[cell];
+    }
+
+    public boolean isEmpty(int cell) {
+        return values[cell] == 0;
+    }
+
+    public int getCandidates(int row, int column) {
+        return candidates[index(row, column)];
+    }
+
+    public int getValue(int row, int column) {
+        return values[index(row, column)];
+    }
+
+    public boolean isEmpty(int row, int column) {
+        return values[index(row, column)] == 0;
+    }
+
+    public int getRowMask(int row) {
+        return rowMasks[row];
+    }
+
+    public int getColumnMask(int column) {
+        return columnMasks[column];
+    }
+
+    public int getSquareMask(int square) {
+        return squareMasks[square];
+    }
+
+    public int getFullMask() {
+        return fullMask;
+    }
+
+    public int getN() {
+        return n;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public Geometry getGeometry() {
+        return geometry;
+    }
+
+    public int squareIndex(int row, int column) {
+        return geometry.getSquare(row, column);
+    }
+
+    private int index(int row, int column) {
+        return row * size + column;
+    }
+}
@@ -0,0 +1,439 @@
+package com.smolka.utils;
+
+public class CandidatePropagation {
+
+    private static final int CONTRADICTION = -1;
+
+    private static final int NO_CHANGES = 0;
+
+    private static final int CHANGED = 1;
+
+    private static final int NOT_FOUND = -2;
+
+    private final CandidateGrid grid;
+
+    private final Geometry geometry;
+
+    private final int size;
+
+    // группы клеток: сначала строки, потом столбцы, потом квадраты
+    private final int[][] units;
+
+    private final int[] buffer;
+
+    public CandidatePropagation(CandidateGrid grid) {
+        this.grid = grid;
+        this.geometry = grid.getGeometry();
+        this.size = grid.getSize();
+        this.units = geometry.getUnits();
+        this.buffer = new int[size];
+    }
+
+    // применяет техники до неподвижной точки, каждый раз начиная с самых дешевых; false - найдено противоречие
+    public boolean propagate() {
+        while (true) {
+            int status = applyNakedSingles();
+            if (status == NO_CHANGES) {
+                status = applyHiddenSingles();
+            }
+            if (status == NO_CHANGES) {
+                status = applyNakedSubsets();
+            }
+            if (status == NO_CHANGES) {
+                status = applyHiddenSubsets();
+            }
+            if (status == NO_CHANGES) {
+                status = applyPointing();
+            }
+            if (status == NO_CHANGES) {
+                status = applyBoxLineReduction();
+            }
+
+            if (status == CONTRADICTION) {
+                return false;
+            }
+            if (status == NO_CHANGES) {
+                return true;
+            }
+        }
+    }
+
+    // только одиночки - то, что находится без поиска пар, троек и пересечений; false - найдено противоречие
+    public boolean propagateSingles() {
+        while (true) {
+            int status = applyNakedSingles();
+            if (status == NO_CHANGES) {
+                status = applyHiddenSingles();
+            }
+
+            if (status == CONTRADICTION) {
+                return false;
+            }
+            if (status == NO_CHANGES) {
+                return true;
+            }
+        }
+    }
+
+    // следующая постановка числа, которую объясняет логика, без поиска и без постановки самого числа. если одиночек нет,
+    // применяется самая простая из техник исключения, которая что-то изменила, и одиночки ищутся заново - grid при этом
+    // теряет только кандидатов. null - логикой не продвинуться, поле заполнено или найдено противоречие
+    public Hint nextHint() {
+        Hint.Technique hardest = null;
+        while (true) {
+            int single = findNakedSingle();
+            if (single == CONTRADICTION) {
+                return null;
+            }
+            if (single != NOT_FOUND) {
+                return createHint(single, grid.getCandidates(single), Hint.Technique.NAKED_SINGLE, hardest);
+            }
+
+            for (int[] unit : units) {
+                int bit = getHiddenSingleBit(unit);
+                if (bit == CONTRADICTION) {
+                    return null;
+                }
+                if (bit != 0) {
+                    for (int cell : unit) {
+                        if (grid.isEmpty(cell) && (grid.getCandidates(cell) & bit) != 0) {
+                            return createHint(cell, bit, Hint.Technique.HIDDEN_SINGLE, hardest);
+                        }
+                    }
+                }
+            }
+
+            Hint.Technique applied = applyCheapestElimination();
+            if (applied == null) {
+                return null;
+            }
+            if (hardest == null || applied.compareTo(hardest) > 0) {
+                hardest = applied;
+            }
+        }
+    }
+
+    private Hint createHint(int cell, int bit, Hint.Technique found, Hint.Technique hardest) {
+        Hint.Technique technique = hardest == null || found.compareTo(hardest) > 0 ? found : hardest;
+
+        return new Hint(geometry.getRow(cell), geometry.getColumn(cell), CandidateGrid.numberOf(bit), technique);
+    }
+
+    // null - ни одна техника ничего не исключила или найдено противоречие
+    private Hint.Technique applyCheapestElimination() {
+        int status = applyPointing();
+        if (status == CHANGED) {
+            return Hint.Technique.POINTING;
+        }
+        status = applyBoxLineReduction();
+        if (status == CHANGED) {
+            return Hint.Technique.BOX_LINE_REDUCTION;
+        }
+        status = applyNakedSubsets();
+        if (status == CHANGED) {
+            return Hint.Technique.NAKED_SUBSET;
+        }
+        if (status == CONTRADICTION) {
+            return null;
+        }
+        status = applyHiddenSubsets();
+
+        return status == CHANGED ? Hint.Technique.HIDDEN_SUBSET : null;
+    }
+
+    // клетка с единственным кандидатом, NOT_FOUND или CONTRADICTION
+    private int findNakedSingle() {
+        for (int cell = 0; cell < size * size; cell++) {
+            if (!grid.isEmpty(cell)) {
+                continue;
+            }
+            int candidates = grid.getCandidates(cell);
+            if (candidates == 0) {
+                return CONTRADICTION;
+            }
+            if (Integer.bitCount(candidates) == 1) {
+                return cell;
+            }
+        }
+
+        return NOT_FOUND;
+    }
+
+    // бит числа, которое в группе можно поставить только в одну клетку, 0 или CONTRADICTION
+    private int getHiddenSingleBit(int[] unit) {
+        int occupied = 0;
+        int once = 0;
+        int twice = 0;
+        for (int cell : unit) {
+            if (!grid.isEmpty(cell)) {
+                occupied |= CandidateGrid.bitOf(grid.getValue(cell));
+                continue;
+            }
+            int candidates = grid.getCandidates(cell);
+            twice |= once & candidates;
+            once |= candidates;
+        }
+
+        int missed = grid.getFullMask() & ~occupied;
+        if ((missed & ~once) != 0) {
+            return CONTRADICTION;
+        }
+        int singles = missed & once & ~twice;
+
+        return singles & -singles;
+    }
+
+    private int applyNakedSingles() {
+        int status = NO_CHANGES;
+        for (int cell = 0; cell < size * size; cell++) {
+            if (!grid.isEmpty(cell)) {
+                continue;
+            }
+            int candidates = grid.getCandidates(cell);
+            if (candidates == 0) {
+                return CONTRADICTION;
+            }
+            if (Integer.bitCount(candidates) == 1) {
+                grid.place(cell, CandidateGrid.numberOf(candidates));
+                status = CHANGED;
+            }
+        }
+
+        return status;
+    }
+
+    private int applyHiddenSingles() {
+        int status = NO_CHANGES;
+        for (int[] unit : units) {
+            int occupied = 0;
+            int once = 0;
+            int twice = 0;
+            for (int cell : unit) {
+                if (!grid.isEmpty(cell)) {
+                    occupied |= CandidateGrid.bitOf(grid.getValue(cell));
+                    continue;
+                }
+                int candidates = grid.getCandidates(cell);
+                twice |= once & candidates;
+                once |= candidates;
+            }
+
+            int missed = grid.getFullMask() & ~occupied;
+            // недостающее число некуда поставить
+            if ((missed & ~once) != 0) {
+                return CONTRADICTION;
+            }
+
+            int singles = missed & once & ~twice;
+            for (int rest = singles; rest != 0; rest &= rest - 1) {
+                int bit = rest & -rest;
+                for (int cell : unit) {
+                    if (grid.isEmpty(cell) && (grid.getCandidates(cell) & bit) != 0) {
+                        grid.place(cell, CandidateGrid.numberOf(bit));
+                        status = CHANGED;
+                        break;
+                    }
+                }
+            }
+        }
+
+        return status;
+    }
+
+    // голые пары и тройки: k клеток группы, в которых на всех k кандидатов, забирают эти числа у остальных клеток группы
+    private int applyNakedSubsets() {
+        int status = NO_CHANGES;
+        for (int[] unit : units) {
+            int count = 0;
+            for (int cell : unit) {
+                int bitCount = Integer.bitCount(grid.getCandidates(cell));
+                if (grid.isEmpty(cell) && bitCount >= 2 && bitCount <= 3) {
+                    buffer[count++] = cell;
+                }
+            }
+
+            for (int i = 0; i < count; i++) {
+                for (int j = i + 1; j < count; j++) {
+                    int pair = grid.getCandidates(buffer[i]) | grid.getCandidates(buffer[j]);
+                    if (Integer.bitCount(pair) == 2 && removeFromUnitExcept(unit, pair, buffer[i], buffer[j], -1)) {
+                        status = CHANGED;
+                    }
+
+                    for (int k = j + 1; k < count; k++) {
+                        int triple = pair | grid.getCandidates(buffer[k]);
+                        int bitCount = Integer.bitCount(triple);
+                        if (bitCount < 3) {
+                            return CONTRADICTION;
+                        }
+                        if (bitCount == 3 && removeFromUnitExcept(unit, triple, buffer[i], buffer[j], buffer[k])) {
+                            status = CHANGED;
+                        }
+                    }
+                }
+            }
+        }
+
+        return status;
+    }
+
+    // скрытые пары и тройки: k чисел, которые в группе можно поставить только в k клеток, вытесняют из этих клеток остальных кандидатов
+    private int applyHiddenSubsets() {
+        int status = NO_CHANGES;
+        for (int[] unit : units) {
+            int count = 0;
+            for (int number = 1; number <= size; number++) {
+                int places = getPlacesInUnit(unit, CandidateGrid.bitOf(number));
+                int bitCount = Integer.bitCount(places);
+                if (bitCount >= 2 && bitCount <= 3) {
+                    buffer[count++] = number;
+                }
+            }
+
+            for (int i = 0; i < count; i++) {
+                int firstBit = CandidateGrid.bitOf(buffer[i]);
+                int firstPlaces = getPlacesInUnit(unit, firstBit);
+                for (int j = i + 1; j < count; j++) {
+                    int secondBit = CandidateGrid.bitOf(buffer[j]);
+                    int pairPlaces = firstPlaces | getPlacesInUnit(unit, secondBit);
+                    if (Integer.bitCount(pairPlaces) == 2 && keepOnlyInPlaces(unit, pairPlaces, firstBit | secondBit)) {
+                        status = CHANGED;
+                    }
+
+                    for (int k = j + 1; k < count; k++) {
+                        int thirdBit = CandidateGrid.bitOf(buffer[k]);
+                        int triplePlaces = pairPlaces | getPlacesInUnit(unit, thirdBit);
+                        int bitCount = Integer.bitCount(triplePlaces);
+                        if (bitCount < 3) {
+                            return CONTRADICTION;
+                        }
+                        if (bitCount == 3 && keepOnlyInPlaces(unit, triplePlaces, firstBit | secondBit | thirdBit)) {
+                            status = CHANGED;
+                        }
+                    }
+                }
+            }
+        }
+
+        return status;
+    }
+
+    // если число в квадрате можно поставить только в одну строку (столбец), в остальной части строки (столбца) его быть не может
+    private int applyPointing() {
+        int status = NO_CHANGES;
+        for (int square = 0; square < size; square++) {
+            int[] unit = units[2 * size + square];
+            for (int number = 1; number <= size; number++) {
+                int bit = CandidateGrid.bitOf(number);
+                int rows = 0;
+                int columns = 0;
+                for (int cell : unit) {
+                    if (grid.isEmpty(cell) && (grid.getCandidates(cell) & bit) != 0) {
+                        rows |= 1 << geometry.getRow(cell);
+                        columns |= 1 << geometry.getColumn(cell);
+                    }
+                }
+
+                if (Integer.bitCount(rows) == 1 && removeOutsideSquare(units[Integer.numberOfTrailingZeros(rows)], square, bit)) {
+                    status = CHANGED;
+                }
+                if (Integer.bitCount(columns) == 1 && removeOutsideSquare(units[size + Integer.numberOfTrailingZeros(columns)], square, bit)) {
+                    status = CHANGED;
+                }
+            }
+        }
+
+        return status;
+    }
+
+    // если число в строке (столбце) можно поставить только внутри одного квадрата, в остальной части квадрата его быть не может
+    private int applyBoxLineReduction() {
+        int status = NO_CHANGES;
+        for (int line = 0; line < 2 * size; line++) {
+            int[] unit = units[line];
+            for (int number = 1; number <= size; number++) {
+                int bit = CandidateGrid.bitOf(number);
+                int squares = 0;
+                for (int cell : unit) {
+                    if (grid.isEmpty(cell) && (grid.getCandidates(cell) & bit) != 0) {
+                        squares |= 1 << geometry.getSquare(cell);
+                    }
+                }
+
+                if (Integer.bitCount(squares) != 1) {
+                    continue;
+                }
+                for (int cell : units[2 * size + Integer.numberOfTrailingZeros(squares)]) {
+                    if (!contains(unit, cell) && removeCandidates(cell, bit)) {
+                        status = CHANGED;
+                    }
+                }
+            }
+        }
+
+        return status;
+    }
+
+    private int getPlacesInUnit(int[] unit, int bit) {
+        int places = 0;
+        for (int slot = 0; slot < unit.length; slot++) {
+            int cell = unit[slot];
+            if (grid.isEmpty(cell) && (grid.getCandidates(cell) & bit) != 0) {
+                places |= 1 << slot;
+            }
+        }
+
+        return places;
+    }
+
+    private boolean removeFromUnitExcept(int[] unit, int mask, int first, int second, int third) {
+        boolean changed = false;
+        for (int cell : unit) {
+            if (cell == first || cell == second || cell == third) {
+                continue;
+            }
+            changed |= removeCandidates(cell, mask);
+        }
+
+        return changed;
+    }
+
+    private boolean keepOnlyInPlaces(int[] unit, int places, int mask) {
+        boolean changed = false;
+        for (int rest = places; rest != 0; rest &= rest - 1) {
+            int cell = unit[Integer.numberOfTrailingZeros(rest)];
+            changed |= removeCandidates(cell, ~mask);
+        }
+
+        return changed;
+    }
+
+    private boolean removeOutsideSquare(int[] line, int square, int bit) {
+        boolean changed = false;
+        for (int cell : line) {
+            if (geometry.getSquare(cell) != square) {
+                changed |= removeCandidates(cell, bit);
+            }
+        }
+
+        return changed;
+    }
+
+    private boolean removeCandidates(int cell, int mask) {
+        if (!grid.isEmpty(cell) || (grid.getCandidates(cell) & mask) == 0) {
+            return false;
+        }
+        grid.removeCandidates(cell, mask);
+
+        return true;
+    }
+
+    private boolean contains(int[] unit, int cell) {
+        for (int unitCell : unit) {
+            if (unitCell == cell) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
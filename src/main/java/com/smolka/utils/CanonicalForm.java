@@ -0,0 +1,397 @@
+package com.smolka.utils;
+
+import java.util.Arrays;
+
+// каноническая форма головоломки: лексикографически минимальная при обходе по столбцам (пустые клетки меньше чисел) среди всех полей,
+// получаемых транспонированием, перестановками полос и строк внутри полос, стеков и столбцов внутри стеков
+// и переименованием чисел. изоморфные головоломки дают одну и ту же форму, а решение формы переводится обратно
+// в решение исходной головоломки. поиск - перебор с отсечениями по префиксу; у почти пустых полей с огромной группой
+// симметрий он ограничен MAX_SEARCH_STEPS, и тогда форма - сама головоломка без преобразований. такая форма
+// по-прежнему корректна как ключ, просто не склеивает изоморфные копии
+public final class CanonicalForm {
+
+    // больше n = 3 перебор не окупается: форма - сама головоломка
+    public static final int MAX_CANONICAL_N = 3;
+
+    private static final int MAX_SEARCH_STEPS = 1_000_000;
+
+    private final int n;
+
+    private final int size;
+
+    private final boolean transposed;
+
+    // строка/столбец формы -> строка/столбец поля (после транспонирования, если оно есть)
+    private final int[] rows;
+
+    private final int[] columns;
+
+    // число головоломки -> число формы, биекция на 1..size
+    private final int[] labels;
+
+    private final int[] inverseLabels;
+
+    private final int[] cells;
+
+    private CanonicalForm(int n, boolean transposed, int[] rows, int[] columns, int[] labels, int[] cells) {
+        this.n = n;
+        this.size = n * n;
+        this.transposed = transposed;
+        this.rows = rows;
+        this.columns = columns;
+        this.labels = labels;
+        this.inverseLabels = new int[size + 1];
+        for (int number = 1; number <= size; number++) {
+            inverseLabels[labels[number]] = number;
+        }
+        this.cells = cells;
+    }
+
+    public static CanonicalForm of(int n, int[][] field) {
+        int size = n * n;
+        int[] cells = new int[size * size];
+        for (int row = 0; row < size; row++) {
+            System.arraycopy(field[row], 0, cells, row * size, size);
+        }
+
+        return n <= MAX_CANONICAL_N ? new Search(n, cells).run() : identity(n, cells);
+    }
+
+    // дешевые инварианты изоморфизма за один проход: отсортированные количества чисел, подписи полос и стеков
+    // (отсортированные количества подсказок в строках каждой полосы, сами полосы тоже отсортированы; пара полосы/стеки
+    // упорядочена, чтобы не зависеть от транспонирования) и отсортированные количества подсказок в квадратах.
+    // у изоморфных головоломок они равны, обратное не гарантировано - это только предварительный ключ перед поиском формы
+    public static int[] invariants(int n, int[][] field) {
+        int size = n * n;
+        int[] numberCounts = new int[size];
+        int[] rowCounts = new int[size];
+        int[] columnCounts = new int[size];
+        int[] squareCounts = new int[size];
+        for (int row = 0; row < size; row++) {
+            int[] fieldRow = field[row];
+            for (int column = 0; column < size; column++) {
+                int number = fieldRow[column];
+                if (number != 0) {
+                    numberCounts[number - 1]++;
+                    rowCounts[row]++;
+                    columnCounts[column]++;
+                    squareCounts[(row / n) * n + column / n]++;
+                }
+            }
+        }
+
+        int[] bands = bandSignature(n, rowCounts);
+        int[] stacks = bandSignature(n, columnCounts);
+        if (Arrays.compare(bands, stacks) > 0) {
+            int[] swap = bands;
+            bands = stacks;
+            stacks = swap;
+        }
+        Arrays.sort(numberCounts);
+        Arrays.sort(squareCounts);
+
+        int[] result = new int[4 * size];
+        System.arraycopy(numberCounts, 0, result, 0, size);
+        System.arraycopy(bands, 0, result, size, size);
+        System.arraycopy(stacks, 0, result, 2 * size, size);
+        System.arraycopy(squareCounts, 0, result, 3 * size, size);
+
+        return result;
+    }
+
+    // количества внутри каждой полосы сортируются, затем полосы сортируются между собой
+    private static int[] bandSignature(int n, int[] counts) {
+        int[][] bands = new int[n][];
+        for (int band = 0; band < n; band++) {
+            bands[band] = Arrays.copyOfRange(counts, band * n, band * n + n);
+            Arrays.sort(bands[band]);
+        }
+        Arrays.sort(bands, Arrays::compare);
+
+        int[] result = new int[n * n];
+        for (int band = 0; band < n; band++) {
+            System.arraycopy(bands[band], 0, result, band * n, n);
+        }
+
+        return result;
+    }
+
+    public int getN() {
+        return n;
+    }
+
+    // клетки формы построчно; массив не должен изменяться
+    public int[] getCells() {
+        return cells;
+    }
+
+    // решение исходной головоломки -> решение формы
+    public int[] toCanonical(int[][] solution) {
+        int[] result = new int[size * size];
+        for (int row = 0; row < size; row++) {
+            for (int column = 0; column < size; column++) {
+                result[row * size + column] = labels[sourceValue(solution, rows[row], columns[column])];
+            }
+        }
+
+        return result;
+    }
+
+    // решение формы -> решение исходной головоломки
+    public int[][] fromCanonical(int[] canonicalSolution) {
+        int[][] result = new int[size][size];
+        for (int row = 0; row < size; row++) {
+            for (int column = 0; column < size; column++) {
+                int number = inverseLabels[canonicalSolution[row * size + column]];
+                if (transposed) {
+                    result[columns[column]][rows[row]] = number;
+                } else {
+                    result[rows[row]][columns[column]] = number;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private int sourceValue(int[][] field, int row, int column) {
+        return transposed ? field[column][row] : field[row][column];
+    }
+
+    private static CanonicalForm identity(int n, int[] cells) {
+        int size = n * n;
+        int[] order = new int[size];
+        int[] labels = new int[size + 1];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+            labels[i + 1] = i + 1;
+        }
+
+        return new CanonicalForm(n, false, order, order.clone(), labels, cells);
+    }
+
+    // поиск в глубину: для каждого транспонирования перебираются все расстановки строк (полосы и строки внутри полос),
+    // затем по одному выбираются столбцы - первый столбец еще не взятого стека или следующий столбец текущего.
+    // форма сравнивается по столбцам сверху вниз, поэтому каждый выбор столбца сравнивает его целиком и ветви отсекаются сразу.
+    // числа переименовываются в порядке первого появления, поэтому префикс формы зависит только от уже выбранного
+    private static class Search {
+
+        private final int n;
+
+        private final int size;
+
+        private final int[] source;
+
+        // текущее поле: исходное или транспонированное
+        private final int[] grid;
+
+        // форма построчно, хотя заполняется и сравнивается по столбцам
+        private final int[] current;
+
+        private final int[] best;
+
+        private boolean hasBest;
+
+        // растет при каждом новом лучшем: префикс, который был меньше старого лучшего, равен префиксу нового
+        private int bestVersion;
+
+        private boolean bestTransposed;
+
+        private final int[] bestRows;
+
+        private final int[] bestColumns;
+
+        private final int[] bestLabels;
+
+        private boolean transposed;
+
+        private final int[] rows;
+
+        private final int[] columns;
+
+        private final boolean[] usedRows;
+
+        private final boolean[] usedColumns;
+
+        private final boolean[] usedBands;
+
+        private final boolean[] usedStacks;
+
+        private final int[] labels;
+
+        // числа в порядке получения меток - для отката
+        private final int[] labelled;
+
+        private int labelledCount;
+
+        private long steps;
+
+        private boolean aborted;
+
+        Search(int n, int[] cells) {
+            this.n = n;
+            this.size = n * n;
+            this.source = cells;
+            this.grid = new int[size * size];
+            this.current = new int[size * size];
+            this.best = new int[size * size];
+            this.bestRows = new int[size];
+            this.bestColumns = new int[size];
+            this.bestLabels = new int[size + 1];
+            this.rows = new int[size];
+            this.columns = new int[size];
+            this.usedRows = new boolean[size];
+            this.usedColumns = new boolean[size];
+            this.usedBands = new boolean[n];
+            this.usedStacks = new boolean[n];
+            this.labels = new int[size + 1];
+            this.labelled = new int[size];
+        }
+
+        CanonicalForm run() {
+            for (int transpose = 0; transpose < 2 && !aborted; transpose++) {
+                transposed = transpose == 1;
+                for (int row = 0; row < size; row++) {
+                    for (int column = 0; column < size; column++) {
+                        grid[row * size + column] = transposed ? source[column * size + row] : source[row * size + column];
+                    }
+                }
+                arrangeRows(0);
+            }
+
+            if (aborted || !hasBest) {
+                return identity(n, source);
+            }
+
+            // числа, которых нет в головоломке, получают оставшиеся метки по возрастанию
+            int nextLabel = 1;
+            for (int number = 1; number <= size; number++) {
+                nextLabel = Math.max(nextLabel, bestLabels[number] + 1);
+            }
+            for (int number = 1; number <= size; number++) {
+                if (bestLabels[number] == 0) {
+                    bestLabels[number] = nextLabel++;
+                }
+            }
+
+            return new CanonicalForm(n, bestTransposed, bestRows.clone(), bestColumns.clone(), bestLabels.clone(), best.clone());
+        }
+
+        private void arrangeRows(int position) {
+            if (position == size) {
+                chooseColumn(0, !hasBest);
+                return;
+            }
+
+            int bandStart = (position % n == 0) ? -1 : (rows[position - 1] / n) * n;
+            for (int row = 0; row < size && !aborted; row++) {
+                if (usedRows[row] || (bandStart < 0 ? usedBands[row / n] : row / n * n != bandStart)) {
+                    continue;
+                }
+
+                rows[position] = row;
+                usedRows[row] = true;
+                boolean bandOpened = position % n == 0;
+                if (bandOpened) {
+                    usedBands[row / n] = true;
+                }
+                arrangeRows(position + 1);
+                if (bandOpened) {
+                    usedBands[row / n] = false;
+                }
+                usedRows[row] = false;
+            }
+        }
+
+        // выбор столбца формы position; less - префикс уже меньше лучшего
+        private void chooseColumn(int position, boolean less) {
+            if (position == size) {
+                if (less) {
+                    saveBest();
+                }
+                return;
+            }
+
+            int version = bestVersion;
+            int stackStart = (position % n == 0) ? -1 : (columns[position - 1] / n) * n;
+            for (int column = 0; column < size && !aborted; column++) {
+                if (usedColumns[column] || (stackStart < 0 ? usedStacks[column / n] : column / n * n != stackStart)) {
+                    continue;
+                }
+                if (version != bestVersion) {
+                    less = false;
+                }
+
+                int mark = labelledCount;
+                int compare = less ? -1 : 0;
+                for (int row = 0; row < size; row++) {
+                    int value = place(row, position, rows[row] * size + column);
+                    if (compare == 0) {
+                        compare = Integer.compare(value, best[row * size + position]);
+                        if (compare > 0) {
+                            break;
+                        }
+                    }
+                }
+                if (compare > 0) {
+                    rollback(mark);
+                    continue;
+                }
+
+                columns[position] = column;
+                usedColumns[column] = true;
+                boolean stackOpened = position % n == 0;
+                if (stackOpened) {
+                    usedStacks[column / n] = true;
+                }
+                chooseColumn(position + 1, compare < 0);
+                if (stackOpened) {
+                    usedStacks[column / n] = false;
+                }
+                usedColumns[column] = false;
+                rollback(mark);
+            }
+        }
+
+        // записывает в клетку формы значение клетки поля с переименованием
+        private int place(int row, int column, int gridCell) {
+            if (++steps > MAX_SEARCH_STEPS) {
+                aborted = true;
+            }
+
+            int number = grid[gridCell];
+            int value = 0;
+            if (number != 0) {
+                if (labels[number] == 0) {
+                    labels[number] = labelledCount + 1;
+                    labelled[labelledCount++] = number;
+                }
+                value = labels[number];
+            }
+            current[row * size + column] = value;
+
+            return value;
+        }
+
+        private void rollback(int mark) {
+            while (labelledCount > mark) {
+                labels[labelled[--labelledCount]] = 0;
+            }
+        }
+
+        private void saveBest() {
+            hasBest = true;
+            bestVersion++;
+            bestTransposed = transposed;
+            System.arraycopy(current, 0, best, 0, current.length);
+            System.arraycopy(rows, 0, bestRows, 0, size);
+            System.arraycopy(columns, 0, bestColumns, 0, size);
+            System.arraycopy(labels, 0, bestLabels, 0, labels.length);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CanonicalForm{n=" + n + ", cells=" + Arrays.toString(cells) + '}';
+    }
+}
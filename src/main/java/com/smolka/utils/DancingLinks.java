@@ -0,0 +1,326 @@
+package com.smolka.utils;
+
+public class DancingLinks {
+
+    private static final int ROOT = 0;
+
+    private static final int NODES_IN_ROW = 4;
+
+    private final int size;
+
+    private final int n;
+
+    private final int cellsCount;
+
+    private final int firstRowNode;
+
+    private final int[] left;
+
+    private final int[] right;
+
+    private final int[] up;
+
+    private final int[] down;
+
+    private final int[] column;
+
+    private final int[] columnSizes;
+
+    private final int[] choices;
+
+    private final int[] givenRows;
+
+    private final int[] hiddenRows;
+
+    public DancingLinks(int n) {
+        this.n = n;
+        this.size = n * n;
+        this.cellsCount = size * size;
+
+        // ограничения: клетка занята, число в строке, число в столбце, число в квадрате
+        int columnsCount = NODES_IN_ROW * cellsCount;
+        int rowsCount = cellsCount * size;
+        int nodesCount = 1 + columnsCount + rowsCount * NODES_IN_ROW;
+
+        this.firstRowNode = 1 + columnsCount;
+        this.left = new int[nodesCount];
+        this.right = new int[nodesCount];
+        this.up = new int[nodesCount];
+        this.down = new int[nodesCount];
+        this.column = new int[nodesCount];
+        this.columnSizes = new int[nodesCount];
+        this.choices = new int[cellsCount];
+        this.givenRows = new int[cellsCount];
+        this.hiddenRows = new int[rowsCount];
+
+        for (int header = 0; header <= columnsCount; header++) {
+            left[header] = header == ROOT ? columnsCount : header - 1;
+            right[header] = header == columnsCount ? ROOT : header + 1;
+            up[header] = header;
+            down[header] = header;
+            column[header] = header;
+        }
+
+        for (int candidateRow = 0; candidateRow < rowsCount; candidateRow++) {
+            int cell = candidateRow / size;
+            int number = candidateRow % size;
+            int row = cell / size;
+            int col = cell % size;
+            int square = (row / n) * n + col / n;
+
+            int[] headers = {
+                    1 + cell,
+                    1 + cellsCount + row * size + number,
+                    1 + 2 * cellsCount + col * size + number,
+                    1 + 3 * cellsCount + square * size + number
+            };
+
+            int first = firstRowNode + candidateRow * NODES_IN_ROW;
+            for (int i = 0; i < NODES_IN_ROW; i++) {
+                int node = first + i;
+                int header = headers[i];
+
+                left[node] = i == 0 ? first + NODES_IN_ROW - 1 : node - 1;
+                right[node] = i == NODES_IN_ROW - 1 ? first : node + 1;
+
+                column[node] = header;
+                up[node] = up[header];
+                down[node] = header;
+                down[up[header]] = node;
+                up[header] = node;
+                columnSizes[header]++;
+            }
+        }
+    }
+
+    public int getN() {
+        return n;
+    }
+
+    // поле задается построчно в одномерном массиве (0 - пустая клетка); поиск останавливается, как только найдено limit решений.
+    // первое найденное решение пишется в result (если он не null). после вызова структура возвращается в исходное состояние
+    public int solve(int[] cells, int[] result, int limit) {
+        return solve(cells, null, result, limit);
+    }
+
+    // то же, но для пустых клеток рассматриваются только числа из маски кандидатов candidates[cell] (бит number - 1).
+    // исключенные кандидаты скрываются из матрицы до поиска, так что перебор идет только по оставшимся после логики вариантам
+    public int solve(int[] cells, int[] candidates, int[] result, int limit) {
+        return solve(cells, candidates, result, limit, SolverBudget.unlimited());
+    }
+
+    // каждый шаг поиска списывается с бюджета; при его превышении структура восстанавливается и бросается SolverBudgetExceededException
+    public int solve(int[] cells, int[] candidates, int[] result, int limit, SolverBudget budget) {
+        assert cells.length == cellsCount;
+        assert candidates == null || candidates.length == cellsCount;
+
+        int givensCount = coverGivens(cells);
+        if (givensCount < 0) {
+            return 0;
+        }
+        int hiddenCount = candidates == null ? 0 : hideExcludedRows(cells, candidates);
+
+        int found = 0;
+        int depth = 0;
+        boolean backtrack = false;
+
+        try {
+            while (true) {
+                budget.check();
+                if (!backtrack) {
+                    if (right[ROOT] == ROOT) {
+                        found++;
+                        if (found == 1 && result != null) {
+                            writeSolution(cells, depth, result);
+                        }
+                        if (found >= limit) {
+                            break;
+                        }
+                        backtrack = true;
+                    } else {
+                        int chosenColumn = chooseColumn();
+                        if (columnSizes[chosenColumn] == 0) {
+                            backtrack = true;
+                        } else {
+                            cover(chosenColumn);
+                            int node = down[chosenColumn];
+                            choices[depth++] = node;
+                            coverRowRest(node);
+                            continue;
+                        }
+                    }
+                }
+
+                if (depth == 0) {
+                    break;
+                }
+
+                int node = choices[--depth];
+                uncoverRowRest(node);
+                int chosenColumn = column[node];
+                node = down[node];
+                if (node != chosenColumn) {
+                    choices[depth++] = node;
+                    coverRowRest(node);
+                    backtrack = false;
+                } else {
+                    uncover(chosenColumn);
+                }
+            }
+        } finally {
+            while (depth > 0) {
+                int node = choices[--depth];
+                uncoverRowRest(node);
+                uncover(column[node]);
+            }
+            unhideRows(hiddenCount);
+            uncoverGivens(givensCount);
+        }
+
+        return found;
+    }
+
+    private int hideExcludedRows(int[] cells, int[] candidates) {
+        int hiddenCount = 0;
+        for (int cell = 0; cell < cellsCount; cell++) {
+            if (cells[cell] != 0) {
+                continue;
+            }
+            for (int number = 0; number < size; number++) {
+                int node = firstRowNode + (cell * size + number) * NODES_IN_ROW;
+                // строки, конфликтующие с подсказками, уже убраны покрытием
+                if ((candidates[cell] & (1 << number)) != 0 || isRowCovered(node)) {
+                    continue;
+                }
+
+                int j = node;
+                do {
+                    up[down[j]] = up[j];
+                    down[up[j]] = down[j];
+                    columnSizes[column[j]]--;
+                    j = right[j];
+                } while (j != node);
+                hiddenRows[hiddenCount++] = node;
+            }
+        }
+
+        return hiddenCount;
+    }
+
+    private void unhideRows(int hiddenCount) {
+        for (int i = hiddenCount - 1; i >= 0; i--) {
+            int node = hiddenRows[i];
+            int j = left[node];
+            do {
+                columnSizes[column[j]]++;
+                up[down[j]] = j;
+                down[up[j]] = j;
+                j = left[j];
+            } while (j != left[node]);
+        }
+    }
+
+    private int coverGivens(int[] cells) {
+        int givensCount = 0;
+        for (int cell = 0; cell < cellsCount; cell++) {
+            int number = cells[cell];
+            if (number == 0) {
+                continue;
+            }
+            if (number < 1 || number > size) {
+                uncoverGivens(givensCount);
+                return -1;
+            }
+
+            int node = firstRowNode + (cell * size + number - 1) * NODES_IN_ROW;
+            // одно из ограничений строки уже покрыто другой подсказкой - одинаковые числа в строке/столбце/квадрате
+            if (isRowCovered(node)) {
+                uncoverGivens(givensCount);
+                return -1;
+            }
+            cover(column[node]);
+            coverRowRest(node);
+            givenRows[givensCount++] = node;
+        }
+
+        return givensCount;
+    }
+
+    private boolean isRowCovered(int node) {
+        int j = node;
+        do {
+            int header = column[j];
+            if (right[left[header]] != header) {
+                return true;
+            }
+            j = right[j];
+        } while (j != node);
+
+        return false;
+    }
+
+    private void uncoverGivens(int givensCount) {
+        for (int i = givensCount - 1; i >= 0; i--) {
+            int node = givenRows[i];
+            uncoverRowRest(node);
+            uncover(column[node]);
+        }
+    }
+
+    private void writeSolution(int[] cells, int depth, int[] result) {
+        System.arraycopy(cells, 0, result, 0, cellsCount);
+        for (int i = 0; i < depth; i++) {
+            int candidateRow = (choices[i] - firstRowNode) / NODES_IN_ROW;
+            result[candidateRow / size] = candidateRow % size + 1;
+        }
+    }
+
+    private int chooseColumn() {
+        int chosen = right[ROOT];
+        int minSize = columnSizes[chosen];
+        for (int header = right[chosen]; header != ROOT && minSize > 1; header = right[header]) {
+            if (columnSizes[header] < minSize) {
+                chosen = header;
+                minSize = columnSizes[header];
+            }
+        }
+
+        return chosen;
+    }
+
+    private void coverRowRest(int node) {
+        for (int j = right[node]; j != node; j = right[j]) {
+            cover(column[j]);
+        }
+    }
+
+    private void uncoverRowRest(int node) {
+        for (int j = left[node]; j != node; j = left[j]) {
+            uncover(column[j]);
+        }
+    }
+
+    private void cover(int header) {
+        right[left[header]] = right[header];
+        left[right[header]] = left[header];
+        for (int i = down[header]; i != header; i = down[i]) {
+            for (int j = right[i]; j != i; j = right[j]) {
+                up[down[j]] = up[j];
+                down[up[j]] = down[j];
+                columnSizes[column[j]]--;
+            }
+        }
+    }
+
+    private void uncover(int header) {
+        for (int i = up[header]; i != header; i = up[i]) {
+            for (int j = left[i]; j != i; j = left[j]) {
+                columnSizes[column[j]]++;
+                up[down[j]] = j;
+                down[up[j]] = j;
+            }
+        }
+        right[left[header]] = header;
+        left[right[header]] = header;
+    }
+}
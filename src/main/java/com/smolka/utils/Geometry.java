@@ -0,0 +1,155 @@
+package com.smolka.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// неизменяемые таблицы поля n^2 x n^2: клетка -> строка/столбец/квадрат, квадрат -> клетки, клетка -> соседи.
+// строятся один раз на n и переиспользуются всеми решателями. клетка - индекс row * size + column.
+// возвращаемые массивы общие для всех потоков и не должны изменяться
+public final class Geometry {
+
+    private static final Map<Integer, Geometry> CACHE = new ConcurrentHashMap<>();
+
+    private final int n;
+
+    private final int size;
+
+    private final int cellsCount;
+
+    private final int[] rows;
+
+    private final int[] columns;
+
+    private final int[] squares;
+
+    private final int[] indexesInSquare;
+
+    // группы клеток: сначала строки, потом столбцы, потом квадраты
+    private final int[][] units;
+
+    // клетки той же строки, столбца и квадрата, без самой клетки и без повторов
+    private final int[][] peers;
+
+    private Geometry(int n) {
+        this.n = n;
+        this.size = n * n;
+        this.cellsCount = size * size;
+        this.rows = new int[cellsCount];
+        this.columns = new int[cellsCount];
+        this.squares = new int[cellsCount];
+        this.indexesInSquare = new int[cellsCount];
+        this.units = new int[3 * size][size];
+        this.peers = new int[cellsCount][];
+
+        for (int cell = 0; cell < cellsCount; cell++) {
+            int row = cell / size;
+            int column = cell % size;
+            rows[cell] = row;
+            columns[cell] = column;
+            squares[cell] = (row / n) * n + column / n;
+            indexesInSquare[cell] = (row % n) * n + column % n;
+
+            units[row][column] = cell;
+            units[size + column][row] = cell;
+            units[2 * size + squares[cell]][indexesInSquare[cell]] = cell;
+        }
+
+        int peersCount = 2 * (size - 1) + (n - 1) * (n - 1);
+        for (int cell = 0; cell < cellsCount; cell++) {
+            int[] cellPeers = new int[peersCount];
+            int count = 0;
+            for (int other : units[rows[cell]]) {
+                if (other != cell) {
+                    cellPeers[count++] = other;
+                }
+            }
+            for (int other : units[size + columns[cell]]) {
+                if (other != cell) {
+                    cellPeers[count++] = other;
+                }
+            }
+            for (int other : units[2 * size + squares[cell]]) {
+                if (rows[other] != rows[cell] && columns[other] != columns[cell]) {
+                    cellPeers[count++] = other;
+                }
+            }
+            peers[cell] = cellPeers;
+        }
+    }
+
+    public static Geometry of(int n) {
+        if (n <= 0) {
+            throw new RuntimeException("Wrong square size " + n);
+        }
+
+        return CACHE.computeIfAbsent(n, Geometry::new);
+    }
+
+    public int getN() {
+        return n;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getCellsCount() {
+        return cellsCount;
+    }
+
+    public int getCell(int row, int column) {
+        return row * size + column;
+    }
+
+    public int getRow(int cell) {
+        return rows[cell];
+    }
+
+    public int getColumn(int cell) {
+        return columns[cell];
+    }
+
+    public int getSquare(int cell) {
+        return squares[cell];
+    }
+
+    public int getSquare(int row, int column) {
+        return squares[row * size + column];
+    }
+
+    public int getIndexInSquare(int cell) {
+        return indexesInSquare[cell];
+    }
+
+    public int getSquareStartRow(int square) {
+        return (square / n) * n;
+    }
+
+    public int getSquareStartColumn(int square) {
+        return (square % n) * n;
+    }
+
+    public int[] getRowCells(int row) {
+        return units[row];
+    }
+
+    public int[] getColumnCells(int column) {
+        return units[size + column];
+    }
+
+    public int[] getSquareCells(int square) {
+        return units[2 * size + square];
+    }
+
+    public int[][] getUnits() {
+        return units;
+    }
+
+    public int[] getPeers(int cell) {
+        return peers[cell];
+    }
+
+    public boolean contains(int row, int column) {
+        return row >= 0 && row < size && column >= 0 && column < size;
+    }
+}
@@ -0,0 +1,15 @@
+package com.smolka.utils;
+
+// следующая логическая постановка: число для клетки и самая сложная техника, которая понадобилась, чтобы до него дойти
+public record Hint(int row, int column, int number, Technique technique) {
+
+    // в порядке возрастания сложности
+    public enum Technique {
+        NAKED_SINGLE,
+        HIDDEN_SINGLE,
+        POINTING,
+        BOX_LINE_REDUCTION,
+        NAKED_SUBSET,
+        HIDDEN_SUBSET
+    }
+}
@@ -1,14 +1,35 @@
 package com.smolka.utils;
 
-import java.util.Objects;
-
+// позиции полей до MAX_CACHED_SIZE x MAX_CACHED_SIZE берутся из общего кэша через of, чтобы не плодить одинаковые объекты;
+// hashCode считается без упаковки и varargs. конструктор оставлен для совместимости
 public record Position(
         int row,
         int column
 ) {
 
+    private static final int MAX_CACHED_SIZE = 64;
+
+    private static final Position[] CACHE = new Position[MAX_CACHED_SIZE * MAX_CACHED_SIZE];
+
+    static {
+        for (int row = 0; row < MAX_CACHED_SIZE; row++) {
+            for (int column = 0; column < MAX_CACHED_SIZE; column++) {
+                CACHE[row * MAX_CACHED_SIZE + column] = new Position(row, column);
+            }
+        }
+    }
+
+    public static Position of(int row, int column) {
+        if (row >= 0 && row < MAX_CACHED_SIZE && column >= 0 && column < MAX_CACHED_SIZE) {
+            return CACHE[row * MAX_CACHED_SIZE + column];
+        }
+
+        return new Position(row, column);
+    }
+
     @Override
     public boolean equals(Object o) {
+        if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Position position = (Position) o;
         return row == position.row && column == position.column;
@@ -16,6 +37,6 @@ public record Position(
 
     @Override
     public int hashCode() {
-        return Objects.hash(row, column);
+        return 31 * row + column;
     }
-}
\ No newline at end of file
+}
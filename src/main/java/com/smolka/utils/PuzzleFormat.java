@@ -0,0 +1,49 @@
+package com.smolka.utils;
+
+public enum PuzzleFormat {
+
+    // головоломка на строку, n^4 символов: '0' или '.' - пустая клетка, '1'-'9', дальше буквы: 'A' - 10, 'B' - 11 и т.д.
+    TEXT,
+
+    // заголовок MAGIC + n + бит на клетку, затем головоломки подряд, по bitsPerCell бит на клетку
+    // (младшие биты байта - раньше), каждая с начала байта. для 9x9 - 4 бита на клетку, 41 байт на головоломку
+    PACKED;
+
+    static final byte[] MAGIC = {'S', 'D', 'K', 'P'};
+
+    static final int HEADER_SIZE = 8;
+
+    // сколько бит нужно на числа 0..n^2
+    static int bitsPerCell(int n) {
+        return Integer.SIZE - Integer.numberOfLeadingZeros(n * n);
+    }
+
+    static int packedRecordSize(int n) {
+        return (n * n * n * n * bitsPerCell(n) + Byte.SIZE - 1) / Byte.SIZE;
+    }
+
+    static int symbolToNumber(int symbol) {
+        if (symbol == '.' || symbol == '0') {
+            return 0;
+        }
+        if (symbol >= '1' && symbol <= '9') {
+            return symbol - '0';
+        }
+        if (symbol >= 'A' && symbol <= 'Z') {
+            return symbol - 'A' + 10;
+        }
+        if (symbol >= 'a' && symbol <= 'z') {
+            return symbol - 'a' + 10;
+        }
+
+        return -1;
+    }
+
+    static byte numberToSymbol(int number) {
+        if (number == 0) {
+            return '.';
+        }
+
+        return (byte) (number <= 9 ? '0' + number : 'A' + number - 10);
+    }
+}
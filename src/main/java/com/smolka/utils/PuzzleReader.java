@@ -0,0 +1,306 @@
+package com.smolka.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// читает головоломки сразу в плоский массив клеток (row * size + column), без int[][] и строк.
+// файл отображается в память окнами, поэтому его размер не ограничен 2 Гб; поток (например, stdin) читается через один буфер.
+// формат определяется по заголовку, размер поля текстового формата - по длине первой строки. не потокобезопасен
+public class PuzzleReader implements AutoCloseable {
+
+    private static final long MAX_WINDOW_SIZE = 256L * 1024 * 1024;
+
+    // больше любой записи для n <= 31
+    private static final int STREAM_BUFFER_SIZE = 1 << 20;
+
+    // null, если читается поток
+    private final FileChannel file;
+
+    private final ReadableByteChannel input;
+
+    private final long fileSize;
+
+    private final PuzzleFormat format;
+
+    private final int n;
+
+    private final int cellsCount;
+
+    private ByteBuffer window;
+
+    private long windowStart;
+
+    private boolean endOfStream;
+
+    private long readCount;
+
+    private PuzzleReader(FileChannel file, ReadableByteChannel input) throws IOException {
+        this.file = file;
+        this.input = input;
+        if (file != null) {
+            this.fileSize = file.size();
+            map(0);
+        } else {
+            this.fileSize = -1;
+            this.window = ByteBuffer.allocate(STREAM_BUFFER_SIZE).flip();
+            while (!endOfStream && window.limit() < window.capacity() && !isHeaderRead()) {
+                readStream();
+            }
+        }
+
+        if (hasMagic()) {
+            this.format = PuzzleFormat.PACKED;
+            this.n = window.get(PuzzleFormat.MAGIC.length);
+            int bitsPerCell = window.get(PuzzleFormat.MAGIC.length + 1);
+            if (n <= 0 || bitsPerCell != PuzzleFormat.bitsPerCell(n)) {
+                throw new RuntimeException("Wrong packed puzzle header: n = " + n + ", bits per cell = " + bitsPerCell);
+            }
+            window.position(PuzzleFormat.HEADER_SIZE);
+        } else {
+            this.format = PuzzleFormat.TEXT;
+            this.n = getTextN();
+        }
+        this.cellsCount = n * n * n * n;
+    }
+
+    public static PuzzleReader open(Path path) {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            return new PuzzleReader(channel, channel);
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    // поток закрывается вместе с reader
+    public static PuzzleReader open(InputStream stream) {
+        try {
+            return new PuzzleReader(null, Channels.newChannel(stream));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public PuzzleFormat getFormat() {
+        return format;
+    }
+
+    public int getN() {
+        return n;
+    }
+
+    // сколько головоломок прочитано
+    public long getReadCount() {
+        return readCount;
+    }
+
+    // false - головоломки кончились
+    public boolean next(int[] cells) {
+        assert cells.length == cellsCount;
+
+        boolean read = format == PuzzleFormat.PACKED ? nextPacked(cells) : nextText(cells);
+        if (read) {
+            readCount++;
+        }
+
+        return read;
+    }
+
+    @Override
+    public void close() {
+        window = null;
+        try {
+            input.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean nextPacked(int[] cells) {
+        if (!ensureAvailable(PuzzleFormat.packedRecordSize(n))) {
+            if (window.hasRemaining()) {
+                throw new RuntimeException("Truncated packed puzzle " + readCount);
+            }
+            return false;
+        }
+
+        int bitsPerCell = PuzzleFormat.bitsPerCell(n);
+        int cellMask = (1 << bitsPerCell) - 1;
+        int size = n * n;
+        long accumulator = 0;
+        int accumulatedBits = 0;
+        for (int cell = 0; cell < cellsCount; cell++) {
+            if (accumulatedBits < bitsPerCell) {
+                accumulator |= (long) (window.get() & 0xFF) << accumulatedBits;
+                accumulatedBits += Byte.SIZE;
+            }
+            int number = (int) accumulator & cellMask;
+            accumulator >>>= bitsPerCell;
+            accumulatedBits -= bitsPerCell;
+            if (number > size) {
+                throw new RuntimeException("Wrong number " + number + " in packed puzzle " + readCount);
+            }
+            cells[cell] = number;
+        }
+
+        return true;
+    }
+
+    private boolean nextText(int[] cells) {
+        // пустые строки между головоломками пропускаются
+        while (true) {
+            if (!ensureAvailable(1)) {
+                return false;
+            }
+            byte symbol = window.get(window.position());
+            if (symbol != '\n' && symbol != '\r') {
+                break;
+            }
+            window.get();
+        }
+
+        // перевод строки после последней головоломки необязателен
+        ensureAvailable(cellsCount + 1);
+        if (window.remaining() < cellsCount) {
+            throw new RuntimeException("Truncated puzzle " + readCount);
+        }
+        int size = n * n;
+        for (int cell = 0; cell < cellsCount; cell++) {
+            int number = PuzzleFormat.symbolToNumber(window.get());
+            if (number < 0 || number > size) {
+                throw new RuntimeException("Wrong symbol in puzzle " + readCount + " at cell " + cell);
+            }
+            cells[cell] = number;
+        }
+
+        if (window.hasRemaining() && window.get(window.position()) == '\r') {
+            window.get();
+            ensureAvailable(1);
+        }
+        if (window.hasRemaining() && window.get() != '\n') {
+            throw new RuntimeException("Puzzle " + readCount + " is longer than " + cellsCount + " symbols");
+        }
+
+        return true;
+    }
+
+    // дочитывает или переотображает окно с текущей позиции, пока в нем меньше bytes байт и вход не кончился;
+    // false - столько байт больше нет. из потока читается не больше, чем нужно, чтобы не ждать следующих головоломок
+    private boolean ensureAvailable(int bytes) {
+        while (window.remaining() < bytes) {
+            if (file != null) {
+                if (windowStart + window.limit() >= fileSize) {
+                    return false;
+                }
+                map(windowStart + window.position());
+            } else {
+                if (endOfStream) {
+                    return false;
+                }
+                readStream();
+            }
+        }
+
+        return true;
+    }
+
+    private void map(long position) {
+        try {
+            windowStart = position;
+            window = file.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAX_WINDOW_SIZE, fileSize - position));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void readStream() {
+        try {
+            window.compact();
+            if (input.read(window) < 0) {
+                endOfStream = true;
+            }
+            window.flip();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // в начале потока уже есть заголовок или первая строка целиком
+    private boolean isHeaderRead() {
+        if (hasMagic()) {
+            return true;
+        }
+
+        boolean lineStarted = false;
+        for (int i = 0; i < window.limit(); i++) {
+            byte symbol = window.get(i);
+            if (symbol == '\n' || symbol == '\r') {
+                if (lineStarted) {
+                    return true;
+                }
+            } else {
+                lineStarted = true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean hasMagic() {
+        if (window.limit() < PuzzleFormat.HEADER_SIZE) {
+            return false;
+        }
+        for (int i = 0; i < PuzzleFormat.MAGIC.length; i++) {
+            if (window.get(i) != PuzzleFormat.MAGIC[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private int getTextN() {
+        int start = 0;
+        while (start < window.limit() && (window.get(start) == '\n' || window.get(start) == '\r')) {
+            start++;
+        }
+        int end = start;
+        while (end < window.limit() && window.get(end) != '\n' && window.get(end) != '\r') {
+            end++;
+        }
+        if (start == end) {
+            // пустой вход
+            return 1;
+        }
+
+        int length = end - start;
+        int n = (int) Math.round(Math.sqrt(Math.sqrt(length)));
+        if (n * n * n * n != length) {
+            throw new RuntimeException("Puzzle length " + length + " is not n^4");
+        }
+
+        return n;
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
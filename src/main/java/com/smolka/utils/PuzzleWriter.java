@@ -0,0 +1,133 @@
+package com.smolka.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+// пишет головоломки (или решения) в формате, который читает PuzzleReader. не потокобезопасен
+public class PuzzleWriter implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final OutputStream output;
+
+    private final PuzzleFormat format;
+
+    private final int n;
+
+    private final int size;
+
+    private final byte[] record;
+
+    public PuzzleWriter(Path path, PuzzleFormat format, int n) {
+        this(newOutputStream(path), format, n);
+    }
+
+    // поток закрывается вместе с writer
+    public PuzzleWriter(OutputStream stream, PuzzleFormat format, int n) {
+        this.format = format;
+        this.n = n;
+        this.size = n * n;
+        this.record = new byte[format == PuzzleFormat.PACKED ? PuzzleFormat.packedRecordSize(n) : size * size + 1];
+        try {
+            this.output = new BufferedOutputStream(stream, BUFFER_SIZE);
+            if (format == PuzzleFormat.PACKED) {
+                byte[] header = new byte[PuzzleFormat.HEADER_SIZE];
+                System.arraycopy(PuzzleFormat.MAGIC, 0, header, 0, PuzzleFormat.MAGIC.length);
+                header[PuzzleFormat.MAGIC.length] = (byte) n;
+                header[PuzzleFormat.MAGIC.length + 1] = (byte) PuzzleFormat.bitsPerCell(n);
+                output.write(header);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public int getN() {
+        return n;
+    }
+
+    public void write(int[][] field) {
+        assert field.length == size;
+        int cell = 0;
+        for (int[] row : field) {
+            assert row.length == size;
+            for (int number : row) {
+                putNumber(cell++, number);
+            }
+        }
+        flushRecord();
+    }
+
+    // клетки построчно в одномерном массиве, 0 - пустая клетка
+    public void write(int[] cells) {
+        assert cells.length == size * size;
+        for (int cell = 0; cell < cells.length; cell++) {
+            putNumber(cell, cells[cell]);
+        }
+        flushRecord();
+    }
+
+    public void flush() {
+        try {
+            output.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            output.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static OutputStream newOutputStream(Path path) {
+        try {
+            return Files.newOutputStream(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void putNumber(int cell, int number) {
+        if (number < 0 || number > size) {
+            throw new RuntimeException("Wrong number " + number + " at cell " + cell);
+        }
+
+        if (format == PuzzleFormat.TEXT) {
+            record[cell] = PuzzleFormat.numberToSymbol(number);
+            return;
+        }
+
+        int bitsPerCell = PuzzleFormat.bitsPerCell(n);
+        if (cell == 0) {
+            Arrays.fill(record, (byte) 0);
+        }
+        // клетка может занимать два соседних байта
+        int bitIndex = cell * bitsPerCell;
+        int value = number << (bitIndex % Byte.SIZE);
+        record[bitIndex / Byte.SIZE] |= (byte) value;
+        if ((bitIndex % Byte.SIZE) + bitsPerCell > Byte.SIZE) {
+            record[bitIndex / Byte.SIZE + 1] |= (byte) (value >>> Byte.SIZE);
+        }
+    }
+
+    private void flushRecord() {
+        if (format == PuzzleFormat.TEXT) {
+            record[record.length - 1] = '\n';
+        }
+        try {
+            output.write(record);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
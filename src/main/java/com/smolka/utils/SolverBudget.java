@@ -0,0 +1,94 @@
+package com.smolka.utils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+// ограничение одного решения по времени и числу шагов перебора (вариантов строк, вершин графа, шагов точного покрытия).
+// учитывает шаги всех потоков решения, так что один экземпляр - на одно решение. при превышении, а также при прерывании
+// потока, создавшего бюджет, очередная проверка бросает SolverBudgetExceededException
+public class SolverBudget {
+
+    private static final SolverBudget UNLIMITED = new SolverBudget(false, 0, Long.MAX_VALUE);
+
+    // часы и флаг прерывания проверяются не на каждом шаге, а раз в столько шагов
+    private static final long CHECK_INTERVAL = 1024;
+
+    private final boolean limited;
+
+    private final long deadlineNanos;
+
+    private final long maxSteps;
+
+    private final AtomicLong steps = new AtomicLong();
+
+    private final Thread owner;
+
+    private volatile String exceededReason;
+
+    private SolverBudget(boolean limited, long deadlineNanos, long maxSteps) {
+        this.limited = limited;
+        this.deadlineNanos = deadlineNanos;
+        this.maxSteps = maxSteps;
+        this.owner = Thread.currentThread();
+    }
+
+    public static SolverBudget unlimited() {
+        return UNLIMITED;
+    }
+
+    public static SolverBudget ofTimeout(Duration timeout) {
+        return new SolverBudget(true, System.nanoTime() + timeout.toNanos(), Long.MAX_VALUE);
+    }
+
+    public static SolverBudget ofDeadline(Instant deadline) {
+        return ofTimeout(Duration.between(Instant.now(), deadline));
+    }
+
+    public static SolverBudget ofSteps(long maxSteps) {
+        return new SolverBudget(true, Long.MAX_VALUE, maxSteps);
+    }
+
+    public static SolverBudget of(Duration timeout, long maxSteps) {
+        return new SolverBudget(true, System.nanoTime() + timeout.toNanos(), maxSteps);
+    }
+
+    public void check() {
+        consume(1);
+    }
+
+    public void consume(long count) {
+        if (!limited) {
+            return;
+        }
+        if (exceededReason != null) {
+            throw new SolverBudgetExceededException(exceededReason);
+        }
+
+        long consumed = steps.addAndGet(count);
+        if (consumed > maxSteps) {
+            exceed("Step budget " + maxSteps + " is exceeded");
+        }
+        if (consumed / CHECK_INTERVAL != (consumed - count) / CHECK_INTERVAL) {
+            if (owner.isInterrupted()) {
+                exceed("Solving thread is interrupted");
+            }
+            if (deadlineNanos != Long.MAX_VALUE && System.nanoTime() - deadlineNanos > 0) {
+                exceed("Deadline is exceeded");
+            }
+        }
+    }
+
+    public boolean isExceeded() {
+        return exceededReason != null;
+    }
+
+    public long getSteps() {
+        return steps.get();
+    }
+
+    private void exceed(String reason) {
+        exceededReason = reason;
+        throw new SolverBudgetExceededException(reason);
+    }
+}
@@ -0,0 +1,10 @@
+package com.smolka.utils;
+
+public class SolverBudgetExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public SolverBudgetExceededException(String message) {
+        super(message);
+    }
+}
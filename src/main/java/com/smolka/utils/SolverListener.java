@@ -0,0 +1,19 @@
+package com.smolka.utils;
+
+// получает статистику решения. вызывается из потоков обхода, поэтому реализации должны быть потокобезопасны.
+// если слушатель не задан, решатель не замеряет время и ничего не вызывает
+public interface SolverListener {
+
+    default void onPhase(SolverPhase phase, long nanos) {
+    }
+
+    default void onLayerBranches(int layerIndex, int branchesCount) {
+    }
+
+    // итог обхода одной группы смежности одним потоком или одной задачей параллельного обхода: пройденные вершины графа и пересечения инверсий
+    default void onTraversal(long nodesVisited, long intersections) {
+    }
+
+    default void onVariantRejected() {
+    }
+}
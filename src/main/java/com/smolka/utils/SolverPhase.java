@@ -0,0 +1,28 @@
+package com.smolka.utils;
+
+public enum SolverPhase {
+
+    // перенос поля в сетку кандидатов
+    CELL_SCAN,
+
+    CANDIDATE_PROPAGATION,
+
+    // маски кандидатов свободных клеток по индексу клетки
+    POTENTIAL_MAP,
+
+    // выбор опорных клеток для уровней дерева
+    ANCHOR_SELECTION,
+
+    // создание уровней, групп смежности и ветвей
+    LAYER_INIT,
+
+    // конфликты ветвей смежных уровней и инверсии
+    CONFLICT_BUILD,
+
+    TRAVERSAL,
+
+    // проверка собранных вариантов поля; время входит и в TRAVERSAL
+    VALIDATION,
+
+    DANCING_LINKS
+}
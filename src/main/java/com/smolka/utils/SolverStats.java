@@ -0,0 +1,92 @@
+package com.smolka.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// накапливает статистику одного или нескольких решений; безопасна для обхода в несколько потоков
+public class SolverStats implements SolverListener {
+
+    private final Map<SolverPhase, LongAdder> phaseNanos = new EnumMap<>(SolverPhase.class);
+
+    // число ветвей по номерам уровней
+    private final List<Integer> layerBranches = Collections.synchronizedList(new ArrayList<>());
+
+    private final LongAdder nodesVisited = new LongAdder();
+
+    private final LongAdder intersections = new LongAdder();
+
+    private final LongAdder rejectedVariants = new LongAdder();
+
+    public SolverStats() {
+        for (SolverPhase phase : SolverPhase.values()) {
+            phaseNanos.put(phase, new LongAdder());
+        }
+    }
+
+    @Override
+    public void onPhase(SolverPhase phase, long nanos) {
+        phaseNanos.get(phase).add(nanos);
+    }
+
+    @Override
+    public void onLayerBranches(int layerIndex, int branchesCount) {
+        synchronized (layerBranches) {
+            while (layerBranches.size() <= layerIndex) {
+                layerBranches.add(0);
+            }
+            layerBranches.set(layerIndex, branchesCount);
+        }
+    }
+
+    @Override
+    public void onTraversal(long nodesVisited, long intersections) {
+        this.nodesVisited.add(nodesVisited);
+        this.intersections.add(intersections);
+    }
+
+    @Override
+    public void onVariantRejected() {
+        rejectedVariants.increment();
+    }
+
+    public long getPhaseNanos(SolverPhase phase) {
+        return phaseNanos.get(phase).sum();
+    }
+
+    public List<Integer> getLayerBranches() {
+        synchronized (layerBranches) {
+            return List.copyOf(layerBranches);
+        }
+    }
+
+    public long getNodesVisited() {
+        return nodesVisited.sum();
+    }
+
+    public long getIntersections() {
+        return intersections.sum();
+    }
+
+    public long getRejectedVariants() {
+        return rejectedVariants.sum();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("SolverStats{");
+        for (SolverPhase phase : SolverPhase.values()) {
+            result.append(phase).append('=').append(getPhaseNanos(phase) / 1_000).append("us, ");
+        }
+        result.append("layerBranches=").append(getLayerBranches())
+                .append(", nodesVisited=").append(getNodesVisited())
+                .append(", intersections=").append(getIntersections())
+                .append(", rejectedVariants=").append(getRejectedVariants())
+                .append('}');
+
+        return result.toString();
+    }
+}
@@ -1,14 +1,18 @@
 package com.smolka.utils;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiPredicate;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public class UniqueSequenceLayeredTree<KEY, VALUE> {
@@ -17,12 +21,17 @@ public class UniqueSequenceLayeredTree<KEY, VALUE> {
 
     private BiPredicate<KEY, KEY> crossLayerAdjacencyBranchElementFunction;
 
-    private final Map<KEY, Layer> layers = new HashMap<>();
+    private final Map<KEY, Layer> layers = new LinkedHashMap<>();
 
-    private final Set<Set<KEY>> adjacencyGroups = new HashSet<>();
+    private final Set<Set<KEY>> adjacencyGroups = new LinkedHashSet<>();
 
     private boolean isInitialized = false;
 
+    // null - статистика не собирается
+    private SolverListener listener;
+
+    private SolverBudget budget = SolverBudget.unlimited();
+
     public UniqueSequenceLayeredTreeResult<KEY, VALUE> getResult() {
         if (!isInitialized) {
             throw new RuntimeException("Is not initialized");
@@ -36,8 +45,48 @@ public class UniqueSequenceLayeredTree<KEY, VALUE> {
         return result;
     }
 
+    // обходит пути по группам смежности, не накапливая их; обход прекращается, как только visitor вернет true
+    public boolean traverse(BiPredicate<Set<KEY>, List<Map<KEY, VALUE>>> visitor) {
+        if (!isInitialized) {
+            throw new RuntimeException("Is not initialized");
+        }
+
+        for (Set<KEY> adjacencyGroup : adjacencyGroups) {
+            if (traverseAdjacencyGroup(adjacencyGroup, visitor, false)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // то же, что traverse, но поддеревья корневых ветвей обходятся параллельно задачами fork/join;
+    // visitor вызывается из разных потоков, после первого true остальные задачи прекращают обход
+    public boolean traverseInParallel(BiPredicate<Set<KEY>, List<Map<KEY, VALUE>>> visitor) {
+        if (!isInitialized) {
+            throw new RuntimeException("Is not initialized");
+        }
+
+        for (Set<KEY> adjacencyGroup : adjacencyGroups) {
+            if (traverseAdjacencyGroup(adjacencyGroup, visitor, true)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public void setListener(SolverListener listener) {
+        this.listener = listener;
+    }
+
+    // ограничивает построение и обход; при превышении initialize и traverse бросают SolverBudgetExceededException
+    public void setBudget(SolverBudget budget) {
+        this.budget = budget;
+    }
 
     public boolean initialize(UniqueSequenceLayeredTreeInitializationParameters<KEY, VALUE> initializationParameters) {
+        long phaseStart = startPhase();
         this.isInitialized = true;
         this.crossLayerAdjacencyFunction = initializationParameters.getCrossLayerAdjacencyFunction() == null ?  (key, key2) -> !Objects.equals(key, key2) :  initializationParameters.getCrossLayerAdjacencyFunction();
         this.crossLayerAdjacencyBranchElementFunction = initializationParameters.getCrossLayerAdjacencyBranchElementFunction();
@@ -46,24 +95,31 @@ public class UniqueSequenceLayeredTree<KEY, VALUE> {
         adjacencyGroups.clear();
 
         for (UniqueSequenceLayeredTreeInitializationParameters.LayerInitializationInfo<KEY, VALUE> layerInitializationInfo : initializationParameters.getLayerInitializationInfoList()) {
-            createNewLayer(layerInitializationInfo.layerKey(), new HashSet<>(layerInitializationInfo.valuesToInitialize().keySet()));
+            createNewLayer(layerInitializationInfo.layerKey(), new LinkedHashSet<>(layerInitializationInfo.valuesToInitialize().keySet()));
         }
 
         for (Layer layer : layers.values()) {
             Set<Layer> adjacentLayers = getAdjacentLayers(layer);
-            Set<KEY> newAdjacentLevelsGroup = new HashSet<>(adjacentLayers.stream().map(Layer::getLayerKey).toList());
+            Set<KEY> newAdjacentLevelsGroup = new LinkedHashSet<>(adjacentLayers.stream().map(Layer::getLayerKey).toList());
             newAdjacentLevelsGroup.add(layer.getLayerKey());
             adjacencyGroups.add(newAdjacentLevelsGroup);
         }
 
         for (UniqueSequenceLayeredTreeInitializationParameters.LayerInitializationInfo<KEY, VALUE> layerInitializationInfo : initializationParameters.getLayerInitializationInfoList()) {
             Layer layer = layers.get(layerInitializationInfo.layerKey());
-            if (!layer.initializeBranches(layerInitializationInfo.valuesToInitialize())) {
+            boolean branchesInitialized = layer.initializeBranches(layerInitializationInfo.valuesToInitialize());
+            if (listener != null) {
+                listener.onLayerBranches(layer.getLayerIndex(), layer.getBranchesCount());
+            }
+            if (!branchesInitialized) {
                 this.isInitialized = false;
+                endPhase(SolverPhase.LAYER_INIT, phaseStart);
                 return false;
             }
         }
+        endPhase(SolverPhase.LAYER_INIT, phaseStart);
 
+        phaseStart = startPhase();
         for (Layer layer : layers.values()) {
             Set<Layer> adjacentLayers = getAdjacentLayers(layer);
             layer.initializeConflictInfo(adjacentLayers, crossLayerAdjacencyBranchElementFunction);
@@ -74,125 +130,107 @@ public class UniqueSequenceLayeredTree<KEY, VALUE> {
             layer.initializeInversionInfo(adjacentLayers);
         }
 
+        for (Layer layer : layers.values()) {
+            layer.clearConflictInfo();
+        }
+        endPhase(SolverPhase.CONFLICT_BUILD, phaseStart);
+
         return true;
     }
 
     private AdjacencyGroupResult<KEY, VALUE> getResultForAdjacencyGroup(Set<KEY> adjacencyGroupList) {
-        Map<UUID, Branch> allBranches = new HashMap<>();
-        for (KEY adjacencyGroupElem : adjacencyGroupList) {
-            Layer layer = layers.get(adjacencyGroupElem);
-            allBranches.putAll(layer.getBranchesMap());
-        }
-
         AdjacencyGroupResult<KEY, VALUE> result = new AdjacencyGroupResult<>(adjacencyGroupList);
-
-        Graph graph = createGraphForAdjacencyGroup(adjacencyGroupList);
-        List<List<UUID>> uuidsBatches = graph.getTraversalResult();
-
-        for (List<UUID> uuidsBatch : uuidsBatches) {
-            List<Map<KEY, VALUE>> branchList = new ArrayList<>();
-            for (UUID uuid : uuidsBatch) {
-                branchList.add(allBranches.get(uuid).getValuesWithKeys());
-            }
-
+        traverseAdjacencyGroup(adjacencyGroupList, (adjacencyGroup, branchList) -> {
             result.put(branchList);
-        }
+            return false;
+        }, false);
 
         return result;
     }
 
-    private Graph createGraphForAdjacencyGroup(Set<KEY> adjacencyGroup) {
-        Map<UUID, GraphNode> createdNodesMap = new HashMap<>();
-        Map<UUID, Map<KEY, Set<UUID>>> commonInversionsMap = new HashMap<>();
+    private boolean traverseAdjacencyGroup(Set<KEY> adjacencyGroupList, BiPredicate<Set<KEY>, List<Map<KEY, VALUE>>> visitor, boolean inParallel) {
+        List<Layer> groupLayers = adjacencyGroupList.stream().map(layers::get).toList();
 
-        List<KEY> layersKeys = adjacencyGroup.stream().toList();
-        KEY firstLayerKey = layersKeys.getFirst();
-        KEY lastLayerKey = layersKeys.getLast();
+        Graph graph = new Graph(groupLayers);
 
-        Layer firstLayer = layers.get(firstLayerKey);
+        Predicate<int[]> pathVisitor = path -> {
+            List<Map<KEY, VALUE>> branchList = new ArrayList<>();
+            for (int i = 0; i < path.length; i++) {
+                branchList.add(groupLayers.get(i).getBranch(path[i]).getValuesWithKeys());
+            }
 
-        for (int i = 0; i < layersKeys.size(); i++) {
-            KEY currentLayerKey = layersKeys.get(i);
-            KEY nextLayerKey = currentLayerKey.equals(lastLayerKey) ? null : layersKeys.get(i + 1);
-            Layer currentLayer = layers.get(currentLayerKey);
-            commonInversionsMap.putAll(currentLayer.getInversionsMap());
+            return visitor.test(adjacencyGroupList, branchList);
+        };
 
-            Set<UUID> currentUuids = currentLayer.getAllBranchesUuids();
-            for (UUID current : currentUuids) {
-                GraphNode currentNode = new GraphNode(nextLayerKey, currentLayerKey, current);
-                createdNodesMap.put(currentNode.getUuid(), currentNode);
-            }
-        }
+        long phaseStart = startPhase();
+        boolean stopped = inParallel ? graph.traverseInParallel(pathVisitor) : graph.traverse(pathVisitor);
+        endPhase(SolverPhase.TRAVERSAL, phaseStart);
 
-        for (UUID uuid : createdNodesMap.keySet()) {
-            GraphNode graphNode = createdNodesMap.get(uuid);
-            if (graphNode.getCurrentLayerKey().equals(lastLayerKey)) {
-                continue;
-            }
-            Map<KEY, Set<UUID>> inversionsForNode = commonInversionsMap.get(graphNode.getUuid());
-            if (inversionsForNode == null) {
-                continue;
-            }
-            Set<UUID> uuidsForNextPosition = inversionsForNode.get(graphNode.getNextLayerKey());
-            if (uuidsForNextPosition == null) {
-                continue;
-            }
-            for (UUID nextUuid : uuidsForNextPosition) {
-                GraphNode nextNode = createdNodesMap.get(nextUuid);
-                graphNode.addNextNode(nextNode);
-            }
-        }
+        return stopped;
+    }
 
-        Graph graph = new Graph(firstLayerKey, layersKeys.size(), commonInversionsMap);
-        for (UUID rootUuid : firstLayer.getAllBranchesUuids()) {
-            graph.addRootNode(createdNodesMap.get(rootUuid));
-        }
+    private long startPhase() {
+        return listener == null ? 0 : System.nanoTime();
+    }
 
-        return graph;
+    private void endPhase(SolverPhase phase, long phaseStart) {
+        if (listener != null) {
+            listener.onPhase(phase, System.nanoTime() - phaseStart);
+        }
     }
 
     private void createNewLayer(KEY layerKey, Set<KEY> layerStructure) {
-        layers.put(layerKey, new Layer(layerKey, layerStructure));
+        layers.put(layerKey, new Layer(layerKey, layers.size(), layerStructure));
     }
 
     private Set<Layer> getAdjacentLayers(Layer layer) {
-        return layers.values().stream().filter(l -> crossLayerAdjacencyFunction.test(layer.getLayerKey(), l.getLayerKey())).collect(Collectors.toSet());
+        return layers.values().stream().filter(l -> crossLayerAdjacencyFunction.test(layer.getLayerKey(), l.getLayerKey())).collect(Collectors.toCollection(LinkedHashSet::new));
     }
 
     private class Layer {
 
         private final KEY layerKey;
 
-        private final Map<UUID, Branch> branches;
+        private final int layerIndex;
+
+        // номер ветви - ее индекс в списке
+        private final List<Branch> branches;
 
         private final Set<KEY> layerStructure;
 
-        private final Map<KeyValueIndex, Set<UUID>> branchesByKeyValueIndex;
+        // битовые множества номеров ветвей слоя с данным значением по данному ключу
+        private final Map<KeyValueIndex, long[]> branchesByKeyValueIndex;
 
-        private final Map<UUID, Map<KEY, Set<UUID>>> conflictMap;
+        // [номер ветви][номер смежного слоя] -> битовое множество номеров ветвей смежного слоя; null - слои не смежны
+        private final List<long[][]> conflictMap;
 
-        private final Map<UUID, Map<KEY, Set<UUID>>> inversionsMap;
+        private final List<long[][]> inversionsMap;
 
-        public Layer(KEY layerKey, Set<KEY> layerStructure) {
+        public Layer(KEY layerKey, int layerIndex, Set<KEY> layerStructure) {
             this.layerKey = layerKey;
+            this.layerIndex = layerIndex;
             this.layerStructure = layerStructure;
             this.layerStructure.add(layerKey);
-            this.branches = new HashMap<>();
-            this.branchesByKeyValueIndex = new HashMap<>();
-            this.conflictMap = new HashMap<>();
-            this.inversionsMap = new HashMap<>();
+            this.branches = new ArrayList<>();
+            this.branchesByKeyValueIndex = new LinkedHashMap<>();
+            this.conflictMap = new ArrayList<>();
+            this.inversionsMap = new ArrayList<>();
         }
 
-        public Map<UUID, Branch> getBranchesMap() {
-            return branches;
+        public Branch getBranch(int branchId) {
+            return branches.get(branchId);
         }
 
-        public Map<UUID, Map<KEY, Set<UUID>>> getInversionsMap() {
-            return inversionsMap;
+        public int getBranchesCount() {
+            return branches.size();
         }
 
-        public Set<UUID> getAllBranchesUuids() {
-            return branches.keySet();
+        public int getLayerIndex() {
+            return layerIndex;
+        }
+
+        public long[][] getInversions(int branchId) {
+            return inversionsMap.get(branchId);
         }
 
         public boolean initializeBranches(Map<KEY, Set<VALUE>> values) {
@@ -200,15 +238,21 @@ public class UniqueSequenceLayeredTree<KEY, VALUE> {
                 throw new RuntimeException("Map doesn't correspond the structure");
             }
 
-            List<Map<KEY, VALUE>> variants = VariantsUtils.getAllVariants(values);
-            if (variants.isEmpty()) {
+            Iterator<Map<KEY, VALUE>> variants = VariantsUtils.iterateVariants(values, budget);
+            if (!variants.hasNext()) {
                 return false;
             }
 
-            for (Map<KEY, VALUE> variant : variants) {
-                Branch newBranch = new Branch(this.layerKey, variant);
-                branches.put(newBranch.getBranchKey(), newBranch);
-                putBranchInKeyValueIndex(newBranch);
+            List<Branch> newBranches = new ArrayList<>();
+            while (variants.hasNext()) {
+                newBranches.add(new Branch(this.layerKey, newBranches.size(), variants.next()));
+            }
+
+            for (Branch newBranch : newBranches) {
+                branches.add(newBranch);
+                conflictMap.add(new long[layers.size()][]);
+                inversionsMap.add(new long[layers.size()][]);
+                putBranchInKeyValueIndex(newBranch, newBranches.size());
             }
             return true;
         }
@@ -219,7 +263,9 @@ public class UniqueSequenceLayeredTree<KEY, VALUE> {
                     continue;
                 }
 
-                for (KeyValueIndex keyValueIndex : branchesByKeyValueIndex.keySet()) {
+                for (Map.Entry<KeyValueIndex, long[]> entry : branchesByKeyValueIndex.entrySet()) {
+                    budget.check();
+                    KeyValueIndex keyValueIndex = entry.getKey();
                     KEY adjacentKey = adjacentLayer.layerStructure.stream().filter(k -> crossLayerAdjacencyBranchElementFunction.test(keyValueIndex.key, k)).findFirst().orElse(null);
                     if (adjacentKey == null) {
                         continue;
@@ -227,20 +273,20 @@ public class UniqueSequenceLayeredTree<KEY, VALUE> {
 
                     VALUE valueFromCurrentIndex = keyValueIndex.value;
 
-                    Set<UUID> currentUuids = branchesByKeyValueIndex.get(keyValueIndex);
+                    long[] currentIds = entry.getValue();
 
                     KeyValueIndex adjacentKeyValueIndex = new KeyValueIndex(adjacentKey, valueFromCurrentIndex);
-                    Set<UUID> conflictedUuids = adjacentLayer.branchesByKeyValueIndex.get(adjacentKeyValueIndex);
-                    if (conflictedUuids == null) {
+                    long[] conflictedIds = adjacentLayer.branchesByKeyValueIndex.get(adjacentKeyValueIndex);
+                    if (conflictedIds == null) {
                         continue;
                     }
 
-                    for (UUID currentUuid : currentUuids) {
-                        putInConflictMap(currentUuid, adjacentLayer.layerKey, conflictedUuids);
+                    for (int currentId = BitsUtils.nextSetBit(currentIds, 0); currentId >= 0; currentId = BitsUtils.nextSetBit(currentIds, currentId + 1)) {
+                        putInConflictMap(currentId, adjacentLayer, conflictedIds);
                     }
 
-                    for (UUID conflictedUuid : conflictedUuids) {
-                        adjacentLayer.putInConflictMap(conflictedUuid, layerKey, currentUuids);
+                    for (int conflictedId = BitsUtils.nextSetBit(conflictedIds, 0); conflictedId >= 0; conflictedId = BitsUtils.nextSetBit(conflictedIds, conflictedId + 1)) {
+                        adjacentLayer.putInConflictMap(conflictedId, this, currentIds);
                     }
                 }
             }
@@ -248,21 +294,31 @@ public class UniqueSequenceLayeredTree<KEY, VALUE> {
 
         public void initializeInversionInfo(Set<Layer> adjacentLayers) {
             for (Layer adjacentLayer : adjacentLayers) {
-                for (Branch branch : branches.values()) {
-                    Set<UUID> compatibleBranchesFromAdjacentLayer = new HashSet<>(adjacentLayer.getAllBranchesUuids());
-                    Set<UUID> dangerousBranchesForAdjacentLayerInCurrentBranch = conflictMap.get(branch.getBranchKey()).get(adjacentLayer.getLayerKey()) == null ? new HashSet<>() : conflictMap.get(branch.getBranchKey()).get(adjacentLayer.getLayerKey());
-                    compatibleBranchesFromAdjacentLayer.removeAll(dangerousBranchesForAdjacentLayerInCurrentBranch);
+                long[] allBranchesFromAdjacentLayer = BitsUtils.newFullBits(adjacentLayer.getBranchesCount());
+                for (int branchId = 0; branchId < branches.size(); branchId++) {
+                    budget.check();
+                    long[] dangerousBranchesForAdjacentLayerInCurrentBranch = conflictMap.get(branchId)[adjacentLayer.layerIndex];
+                    long[] compatibleBranchesFromAdjacentLayer = allBranchesFromAdjacentLayer.clone();
+                    if (dangerousBranchesForAdjacentLayerInCurrentBranch != null) {
+                        BitsUtils.andNot(allBranchesFromAdjacentLayer, dangerousBranchesForAdjacentLayerInCurrentBranch, compatibleBranchesFromAdjacentLayer);
+                    }
 
-                    inversionsMap.putIfAbsent(branch.getBranchKey(), new HashMap<>());
-                    inversionsMap.get(branch.getBranchKey()).put(adjacentLayer.getLayerKey(), compatibleBranchesFromAdjacentLayer);
+                    inversionsMap.get(branchId)[adjacentLayer.layerIndex] = compatibleBranchesFromAdjacentLayer;
                 }
             }
         }
 
-        public void putInConflictMap(UUID branchInCurrentLayer, KEY otherLayerKey, Set<UUID> conflictedBranchesUuids) {
-            conflictMap.putIfAbsent(branchInCurrentLayer, new HashMap<>());
-            conflictMap.get(branchInCurrentLayer).putIfAbsent(otherLayerKey, new HashSet<>());
-            conflictMap.get(branchInCurrentLayer).get(otherLayerKey).addAll(conflictedBranchesUuids);
+        // конфликты нужны только для построения инверсий
+        public void clearConflictInfo() {
+            conflictMap.clear();
+        }
+
+        public void putInConflictMap(int branchInCurrentLayer, Layer otherLayer, long[] conflictedBranchesIds) {
+            long[][] conflictsForBranch = conflictMap.get(branchInCurrentLayer);
+            if (conflictsForBranch[otherLayer.layerIndex] == null) {
+                conflictsForBranch[otherLayer.layerIndex] = BitsUtils.newBits(otherLayer.getBranchesCount());
+            }
+            BitsUtils.or(conflictsForBranch[otherLayer.layerIndex], conflictedBranchesIds);
         }
 
         public KEY getLayerKey() {
@@ -273,21 +329,20 @@ public class UniqueSequenceLayeredTree<KEY, VALUE> {
             return branches.isEmpty();
         }
 
-        private void putBranchInKeyValueIndex(Branch branch) {
+        private void putBranchInKeyValueIndex(Branch branch, int branchesCount) {
             for (Map.Entry<KEY, VALUE> valuesWithKeys : branch.getValuesWithKeys().entrySet()) {
                 KEY key = valuesWithKeys.getKey();
                 VALUE value = valuesWithKeys.getValue();
 
                 KeyValueIndex keyValueIndex = new KeyValueIndex(key, value);
-                branchesByKeyValueIndex.putIfAbsent(keyValueIndex, new HashSet<>());
-                branchesByKeyValueIndex.get(keyValueIndex).add(branch.getBranchKey());
+                BitsUtils.set(branchesByKeyValueIndex.computeIfAbsent(keyValueIndex, k -> BitsUtils.newBits(branchesCount)), branch.getBranchId());
             }
         }
 
         @Override
         public boolean equals(Object o) {
             if (o == null || getClass() != o.getClass()) return false;
-            Layer layer = (Layer) o;
+            UniqueSequenceLayeredTree<?, ?>.Layer layer = (UniqueSequenceLayeredTree<?, ?>.Layer) o;
             return Objects.equals(layerKey, layer.layerKey);
         }
 
@@ -301,12 +356,12 @@ public class UniqueSequenceLayeredTree<KEY, VALUE> {
 
         private final KEY layerKey;
 
-        private final UUID branchKey;
+        private final int branchId;
 
         private final Map<KEY, VALUE> valuesWithKeys;
 
-        public Branch(KEY layerKey, Map<KEY, VALUE> valuesWithKeys) {
-            this.branchKey = UUID.randomUUID();
+        public Branch(KEY layerKey, int branchId, Map<KEY, VALUE> valuesWithKeys) {
+            this.branchId = branchId;
             this.layerKey = layerKey;
             this.valuesWithKeys = valuesWithKeys;
         }
@@ -315,8 +370,8 @@ public class UniqueSequenceLayeredTree<KEY, VALUE> {
             return layerKey;
         }
 
-        public UUID getBranchKey() {
-            return branchKey;
+        public int getBranchId() {
+            return branchId;
         }
 
         public Map<KEY, VALUE> getValuesWithKeys() {
@@ -326,13 +381,13 @@ public class UniqueSequenceLayeredTree<KEY, VALUE> {
         @Override
         public boolean equals(Object o) {
             if (o == null || getClass() != o.getClass()) return false;
-            Branch branch = (Branch) o;
-            return Objects.equals(branchKey, branch.branchKey);
+            UniqueSequenceLayeredTree<?, ?>.Branch branch = (UniqueSequenceLayeredTree<?, ?>.Branch) o;
+            return branchId == branch.branchId && Objects.equals(layerKey, branch.layerKey);
         }
 
         @Override
         public int hashCode() {
-            return Objects.hashCode(branchKey);
+            return Objects.hash(layerKey, branchId);
         }
     }
 
@@ -350,7 +405,7 @@ public class UniqueSequenceLayeredTree<KEY, VALUE> {
         @Override
         public boolean equals(Object o) {
             if (o == null || getClass() != o.getClass()) return false;
-            KeyValueIndex that = (KeyValueIndex) o;
+            UniqueSequenceLayeredTree<?, ?>.KeyValueIndex that = (UniqueSequenceLayeredTree<?, ?>.KeyValueIndex) o;
             return Objects.equals(key, that.key) && Objects.equals(value, that.value);
         }
 
@@ -362,200 +417,177 @@ public class UniqueSequenceLayeredTree<KEY, VALUE> {
 
     private class Graph {
 
-        private final KEY rootLayerKey;
+        private static final int BUDGET_BATCH = 64;
 
-        private final int layersCount;
+        // при меньшем числе корней накладные расходы fork/join не окупаются - обход идет в вызывающем потоке
+        private static final int MIN_PARALLEL_ROOTS = 8;
 
-        private final List<GraphNode> rootNodes;
+        // корней на одну задачу: буферы обхода выделяются один раз на задачу
+        private static final int ROOTS_PER_TASK = 2;
 
-        private final Map<UUID, Map<KEY, Set<UUID>>> inversionsMap;
+        private final List<Layer> groupLayers;
 
-        public Graph(KEY rootLayerKey, int layersCount, Map<UUID, Map<KEY, Set<UUID>>> inversionsMap) {
-            this.rootLayerKey = rootLayerKey;
-            this.layersCount = layersCount;
-            this.rootNodes = new ArrayList<>();
-            this.inversionsMap = inversionsMap;
-        }
+        private final int layersCount;
 
-        public void addRootNode(GraphNode rootNode) {
-            assert rootNode.getCurrentLayerKey().equals(rootLayerKey);
+        // все ветви уровня - для уровней, не смежных с уже пройденными
+        private final long[][] allBranches;
 
-            rootNodes.add(rootNode);
+        public Graph(List<Layer> groupLayers) {
+            this.groupLayers = groupLayers;
+            this.layersCount = groupLayers.size();
+            this.allBranches = new long[layersCount][];
+            for (int i = 0; i < layersCount; i++) {
+                allBranches[i] = BitsUtils.newFullBits(groupLayers.get(i).getBranchesCount());
+            }
         }
 
-        public List<List<UUID>> getTraversalResult() {
-            List<List<UUID>> result = new ArrayList<>();
-
-            for (GraphNode rootNode : rootNodes) {
-                GraphStep step = new GraphStep(rootNode);
-                GraphStep localResult = step(step);
-
-                result.addAll(localResult.resultSet);
+        // пути (номера ветвей по уровням) отдаются visitor по мере нахождения; true от него прекращает обход
+        public boolean traverse(Predicate<int[]> visitor) {
+            GraphStep step = new GraphStep(visitor, new AtomicBoolean());
+            boolean stopped = false;
+            for (int rootId = 0; rootId < groupLayers.getFirst().getBranchesCount() && !stopped; rootId++) {
+                stopped = step(step, 0, rootId);
             }
+            reportTraversal(step);
 
-            return result;
+            return stopped;
         }
 
-        private GraphStep step(GraphStep step) {
-            step.addCurrentUuidToPassedPath();
-
-            GraphNode currentNode = step.currentNode;
-            if (currentNode.isEnd()) {
-                if (step.passedPath.size() == layersCount) {
-                    step.addPassedPathToResultSet();
-                }
-                return step;
+        // поддеревья корней независимы - они только читают инверсии слоев, поэтому корни делятся между задачами.
+        // буферы обхода свои у каждой конечной задачи и живут не дольше нее, флаг остановки общий
+        public boolean traverseInParallel(Predicate<int[]> visitor) {
+            int rootsCount = groupLayers.getFirst().getBranchesCount();
+            if (rootsCount < MIN_PARALLEL_ROOTS) {
+                return traverse(visitor);
             }
 
-            Map<KEY, Set<UUID>> inversionsForCurrent = inversionsMap.get(step.currentNode.getUuid());
-            if (inversionsForCurrent == null) {
-                return step;
-            }
-            if (step.actualInversions == null) {
-                step.setActualInversions(inversionsForCurrent);
-            } else {
-                Map<KEY, Set<UUID>> newInversions = new HashMap<>();
-                for (Map.Entry<KEY, Set<UUID>> entry : step.actualInversions.entrySet()) {
-                    KEY keyFromActual = entry.getKey();
-                    Set<UUID> inversionFromActual = entry.getValue();
-
-                    if (inversionFromActual == null || inversionFromActual.isEmpty()) {
-                        continue;
-                    }
+            AtomicBoolean stopped = new AtomicBoolean();
+            // из потока вне общего пула (пул SudokuBatchSolver, вызовы через CachedSudoku и т.д.) invoke блокирует вызывающий
+            // поток, пока задачу выполняют потоки общего пула; из потока самого общего пула задача начинается в нем же.
+            // пул один на процесс: параллельные решения из нескольких потоков пакетного решателя делят его потоки между собой
+            ForkJoinPool.commonPool().invoke(new RootsTask(visitor, stopped, 0, rootsCount));
 
-                    Set<UUID> inversionForCurrent = inversionsForCurrent.get(keyFromActual);
-
-                    if (inversionForCurrent == null || inversionForCurrent.isEmpty()) {
-                        continue;
-                    }
+            return stopped.get();
+        }
 
-                    Set<UUID> intersections = new HashSet<>(inversionFromActual);
-                    intersections.retainAll(inversionForCurrent);
+        private void reportTraversal(GraphStep step) {
+            if (listener != null) {
+                listener.onTraversal(step.nodesVisited, step.intersections);
+            }
+        }
 
-                    if (intersections.isEmpty()) {
-                        return step;
-                    }
+        private boolean step(GraphStep step, int depth, int branchId) {
+            if (step.stopped.get()) {
+                return true;
+            }
+            // бюджет общий для всех потоков обхода, поэтому вершины списываются с него пачками
+            if (++step.nodesVisited % BUDGET_BATCH == 0) {
+                budget.consume(BUDGET_BATCH);
+            }
+            step.path[depth] = branchId;
 
-                    newInversions.put(keyFromActual, intersections);
+            if (depth == layersCount - 1) {
+                if (step.visitor.test(step.path.clone())) {
+                    step.stopped.set(true);
+                    return true;
                 }
-                step.setActualInversions(newInversions);
+                return false;
             }
 
-            KEY nextLayer = currentNode.getNextLayerKey();
-            Set<UUID> nextUuidsToStep = step.actualInversions.get(nextLayer);
-            if (nextUuidsToStep == null) {
-                return step;
-            }
+            // совместимые ветви оставшихся уровней - пересечение инверсий всех ветвей пути
+            long[][] inversionsForCurrent = groupLayers.get(depth).getInversions(branchId);
+            long[][] actualInversions = step.actualInversions[depth];
+            for (int next = depth + 1; next < layersCount; next++) {
+                long[] inversionFromActual = depth == 0 ? allBranches[next] : step.actualInversions[depth - 1][next];
+                long[] inversionForCurrent = inversionsForCurrent[groupLayers.get(next).getLayerIndex()];
+                if (inversionForCurrent == null) {
+                    System.arraycopy(inversionFromActual, 0, actualInversions[next], 0, inversionFromActual.length);
+                    continue;
+                }
 
-            Map<UUID, GraphNode> nextNodes = currentNode.getNextNodes();
+                step.intersections++;
+                if (!BitsUtils.and(inversionFromActual, inversionForCurrent, actualInversions[next])) {
+                    return false;
+                }
+            }
 
-            for (UUID nextUuidToStep : nextUuidsToStep) {
-                GraphNode newGraphNode = nextNodes.get(nextUuidToStep);
-                if (newGraphNode == null) {
-                    continue;
+            long[] nextIdsToStep = actualInversions[depth + 1];
+            for (int nextId = BitsUtils.nextSetBit(nextIdsToStep, 0); nextId >= 0; nextId = BitsUtils.nextSetBit(nextIdsToStep, nextId + 1)) {
+                if (step(step, depth + 1, nextId)) {
+                    return true;
                 }
-                GraphStep newStep = step.copyWithNewUuidAndNextNodes(newGraphNode);
-                step(newStep);
             }
 
-            return step;
+            return false;
         }
 
-        private class GraphStep {
+        private class RootsTask extends RecursiveAction {
 
-            private Map<KEY, Set<UUID>> actualInversions;
+            private static final long serialVersionUID = 1L;
 
-            private List<List<UUID>> resultSet;
+            private final transient Predicate<int[]> visitor;
 
-            private final Set<UUID> passedPath;
+            private final AtomicBoolean stopped;
 
-            private final GraphNode currentNode;
+            private final int fromRootId;
 
-            public GraphStep(GraphNode currentNode) {
-                this.currentNode = currentNode;
-                this.resultSet = new ArrayList<>();
-                this.passedPath = new HashSet<>();
-            }
-
-            public void setActualInversions(Map<KEY, Set<UUID>> actualInversions) {
-                this.actualInversions = actualInversions;
-            }
-
-            public GraphStep copyWithNewUuidAndNextNodes(GraphNode newNode) {
-                GraphStep copy = new GraphStep(newNode);
-                copy.passedPath.addAll(passedPath);
-                copy.resultSet = resultSet;
-                copy.actualInversions = safeCopyOfActualInversions(actualInversions);
-
-                return copy;
-            }
-
-            public void addCurrentUuidToPassedPath() {
-                passedPath.add(currentNode.getUuid());
-            }
+            private final int toRootId;
 
-            public void addPassedPathToResultSet() {
-                resultSet.add(new ArrayList<>(passedPath));
+            RootsTask(Predicate<int[]> visitor, AtomicBoolean stopped, int fromRootId, int toRootId) {
+                this.visitor = visitor;
+                this.stopped = stopped;
+                this.fromRootId = fromRootId;
+                this.toRootId = toRootId;
             }
 
-            private Map<KEY, Set<UUID>> safeCopyOfActualInversions(Map<KEY, Set<UUID>> actualInversions) {
-                Map<KEY, Set<UUID>> copy = new HashMap<>();
-                for (Map.Entry<KEY, Set<UUID>> actualInversionEntry : actualInversions.entrySet()) {
-                    KEY key = actualInversionEntry.getKey();
-                    Set<UUID> uuids = actualInversionEntry.getValue();
-
-                    copy.put(key, new HashSet<>(uuids));
+            @Override
+            protected void compute() {
+                if (stopped.get()) {
+                    return;
+                }
+                if (toRootId - fromRootId <= ROOTS_PER_TASK) {
+                    GraphStep step = new GraphStep(visitor, stopped);
+                    for (int rootId = fromRootId; rootId < toRootId; rootId++) {
+                        if (step(step, 0, rootId)) {
+                            break;
+                        }
+                    }
+                    reportTraversal(step);
+                    return;
                 }
 
-                return copy;
+                int middle = (fromRootId + toRootId) >>> 1;
+                invokeAll(new RootsTask(visitor, stopped, fromRootId, middle), new RootsTask(visitor, stopped, middle, toRootId));
             }
         }
-    }
-
-    protected class GraphNode {
-
-        private final UUID uuid;
 
-        private final KEY currentLayerKey;
-
-        private final KEY nextLayerKey;
-
-        private final Map<UUID, GraphNode> nextNodes;
-
-        public GraphNode(KEY nextLayerKey, KEY currentLayerKey, UUID uuid) {
-            this.nextLayerKey = nextLayerKey;
-            this.currentLayerKey = currentLayerKey;
-            this.uuid = uuid;
-            this.nextNodes = new HashMap<>();
-        }
+        // буферы обхода: по одному набору пересечений на глубину, переиспользуются между соседними ветвями
+        private class GraphStep {
 
-        public void addNextNode(GraphNode nextNode) {
-            if (nextLayerKey == null) {
-                throw new RuntimeException("Can not add such node");
-            }
-            assert nextNode.currentLayerKey.equals(nextLayerKey);
+            private final Predicate<int[]> visitor;
 
-            nextNodes.put(nextNode.getUuid(), nextNode);
-        }
+            private final AtomicBoolean stopped;
 
-        public UUID getUuid() {
-            return uuid;
-        }
+            private final int[] path;
 
-        public KEY getCurrentLayerKey() {
-            return currentLayerKey;
-        }
+            private final long[][][] actualInversions;
 
-        public KEY getNextLayerKey() {
-            return nextLayerKey;
-        }
+            // счетчики для статистики; буфер принадлежит одному потоку, поэтому поля обычные
+            private long nodesVisited;
 
-        public Map<UUID, GraphNode> getNextNodes() {
-            return nextNodes;
-        }
+            private long intersections;
 
-        public boolean isEnd() {
-            return nextLayerKey == null || nextNodes.isEmpty();
+            public GraphStep(Predicate<int[]> visitor, AtomicBoolean stopped) {
+                this.visitor = visitor;
+                this.stopped = stopped;
+                this.path = new int[layersCount];
+                this.actualInversions = new long[layersCount][layersCount][];
+                for (int depth = 0; depth < layersCount; depth++) {
+                    for (int next = depth + 1; next < layersCount; next++) {
+                        actualInversions[depth][next] = BitsUtils.newBits(groupLayers.get(next).getBranchesCount());
+                    }
+                }
+            }
         }
     }
 }
@@ -0,0 +1,165 @@
+package com.smolka.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class VariantValidator {
+
+    private static final int EMPTY_ELEM = 0;
+
+    // меньше этого количества вариантов проверяются в одном потоке
+    private static final int BATCH_THRESHOLD = 1024;
+
+    // маски столбцов и квадратов; строка проверяется локальной маской. один буфер на поток на все валидаторы
+    private static final ThreadLocal<int[]> SCRATCH = ThreadLocal.withInitial(() -> new int[2 * Integer.SIZE]);
+
+    private final int size;
+
+    private final Geometry geometry;
+
+    private final int[] givens;
+
+    public VariantValidator(int n, int[][] field) {
+        this.size = n * n;
+        this.geometry = Geometry.of(n);
+        if (size > Integer.SIZE) {
+            throw new RuntimeException("Grid size " + size + " doesn't fit into int mask");
+        }
+        this.givens = new int[size * size];
+        for (int row = 0; row < size; row++) {
+            System.arraycopy(field[row], 0, givens, row * size, size);
+        }
+    }
+
+    public static int[] newScratch() {
+        return new int[2 * Integer.SIZE];
+    }
+
+    public boolean check(int[][] variant) {
+        return check(variant, SCRATCH.get());
+    }
+
+    public boolean check(int[] variant) {
+        return check(variant, SCRATCH.get());
+    }
+
+    // большие пачки делятся между потоками fork/join; каждая подзадача берет буфер своего потока один раз
+    public boolean[] checkAll(List<int[][]> variants) {
+        List<int[][]> randomAccessVariants = variants instanceof RandomAccess ? variants : new ArrayList<>(variants);
+        boolean[] result = new boolean[randomAccessVariants.size()];
+
+        BatchCheckTask task = new BatchCheckTask(randomAccessVariants, result, 0, result.length);
+        if (result.length <= BATCH_THRESHOLD) {
+            task.compute();
+        } else {
+            ForkJoinPool.commonPool().invoke(task);
+        }
+
+        return result;
+    }
+
+    // за один проход сверяет подсказки и проверяет, что в каждой строке, столбце и квадрате нет повторов и чисел вне диапазона
+    public boolean check(int[][] variant, int[] scratch) {
+        if (variant == null || variant.length != size) {
+            return false;
+        }
+        for (int[] variantRow : variant) {
+            if (variantRow == null || variantRow.length != size) {
+                return false;
+            }
+        }
+
+        Arrays.fill(scratch, 0, 2 * size, 0);
+        for (int row = 0; row < size; row++) {
+            int[] variantRow = variant[row];
+            int rowMask = 0;
+            for (int column = 0; column < size; column++) {
+                int number = variantRow[column];
+                int bit = checkCell(row, column, number, rowMask, scratch);
+                if (bit == 0) {
+                    return false;
+                }
+                rowMask |= bit;
+            }
+        }
+
+        return true;
+    }
+
+    public boolean check(int[] variant, int[] scratch) {
+        if (variant == null || variant.length != size * size) {
+            return false;
+        }
+
+        Arrays.fill(scratch, 0, 2 * size, 0);
+        for (int row = 0; row < size; row++) {
+            int rowMask = 0;
+            for (int column = 0; column < size; column++) {
+                int number = variant[row * size + column];
+                int bit = checkCell(row, column, number, rowMask, scratch);
+                if (bit == 0) {
+                    return false;
+                }
+                rowMask |= bit;
+            }
+        }
+
+        return true;
+    }
+
+    // бит числа, если его можно поставить в клетку, иначе 0
+    private int checkCell(int row, int column, int number, int rowMask, int[] scratch) {
+        int given = givens[row * size + column];
+        if (number < 1 || number > size || (given != EMPTY_ELEM && given != number)) {
+            return 0;
+        }
+
+        int bit = 1 << (number - 1);
+        int squareSlot = size + geometry.getSquare(row, column);
+        if (((rowMask | scratch[column] | scratch[squareSlot]) & bit) != 0) {
+            return 0;
+        }
+        scratch[column] |= bit;
+        scratch[squareSlot] |= bit;
+
+        return bit;
+    }
+
+    private class BatchCheckTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<int[][]> variants;
+
+        private final boolean[] result;
+
+        private final int from;
+
+        private final int to;
+
+        BatchCheckTask(List<int[][]> variants, boolean[] result, int from, int to) {
+            this.variants = variants;
+            this.result = result;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_THRESHOLD) {
+                int[] scratch = SCRATCH.get();
+                for (int i = from; i < to; i++) {
+                    result[i] = check(variants.get(i), scratch);
+                }
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new BatchCheckTask(variants, result, from, middle), new BatchCheckTask(variants, result, middle, to));
+        }
+    }
+}
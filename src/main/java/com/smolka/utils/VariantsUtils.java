@@ -1,67 +1,159 @@
 package com.smolka.utils;
 
-import org.apache.commons.lang3.tuple.Pair;
-
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class VariantsUtils {
 
     public static <K, V> List<Map<K, V>> getAllVariants(Map<K, Set<V>> keyValuesMap) {
         List<Map<K, V>> result = new ArrayList<>();
-        Map<K, V> bufMap = new HashMap<>();
-        Set<V> bufSet = new HashSet<>();
+        iterateVariants(keyValuesMap).forEachRemaining(result::add);
 
-        List<Pair<K, List<V>>> content = keyValuesMap.entrySet().stream()
-                        .map(es -> Pair.of(es.getKey(), es.getValue().stream().toList()))
-                        .toList();
+        return result;
+    }
 
-        variantsFillingInRecursion(content, result, bufMap, bufSet, 0, 0);
+    public static <K, V> Iterator<Map<K, V>> iterateVariants(Map<K, Set<V>> keyValuesMap) {
+        return iterateVariants(keyValuesMap, SolverBudget.unlimited());
+    }
 
-        return result;
+    // каждый шаг перебора списывается с бюджета; при его превышении hasNext/next бросают SolverBudgetExceededException
+    public static <K, V> Iterator<Map<K, V>> iterateVariants(Map<K, Set<V>> keyValuesMap, SolverBudget budget) {
+        return new VariantsIterator<>(keyValuesMap, budget);
     }
 
-    private static <K, V> void variantsFillingInRecursion(List<Pair<K, List<V>>> content,
-                                                          List<Map<K, V>> result,
-                                                          Map<K, V> bufMap,
-                                                          Set<V> bufSet,
-                                                          int currentLevelIndex,
-                                                          int currentValueIndex) {
-        Pair<K, List<V>> pair = content.get(currentLevelIndex);
-        K key = pair.getKey();
-        List<V> values = pair.getValue();
+    public static <K, V> Stream<Map<K, V>> streamVariants(Map<K, Set<V>> keyValuesMap) {
+        Spliterator<Map<K, V>> spliterator = Spliterators.spliteratorUnknownSize(iterateVariants(keyValuesMap), Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false);
+    }
 
-        boolean isLastLevel = currentLevelIndex == content.size() - 1;
-        boolean isLastValueInLevel = currentValueIndex == values.size() - 1;
+    // перебор в глубину без рекурсии: на каждом уровне хранится только индекс следующего значения и выбранное значение,
+    // очередной вариант собирается в мапу только когда его запрашивают
+    private static class VariantsIterator<K, V> implements Iterator<Map<K, V>> {
 
-        V currValue = values.get(currentValueIndex);
+        private final List<K> keys;
 
-        if (!bufSet.contains(currValue)) {
-            bufMap.put(key, currValue);
+        private final List<V> distinctValues;
 
-            if (isLastLevel) {
-                if (bufMap.size() == content.size()) {
-                    result.add(new HashMap<>(bufMap));
-                }
+        // для каждого уровня - номера его значений в distinctValues
+        private final int[][] levelValues;
+
+        private final int[] nextValueIndexes;
+
+        private final int[] chosenValues;
 
-                if (!isLastValueInLevel) {
-                    variantsFillingInRecursion(content, result, new HashMap<>(bufMap), new HashSet<>(bufSet), currentLevelIndex, currentValueIndex + 1);
+        private final boolean[] usedValues;
+
+        private final SolverBudget budget;
+
+        private int depth;
+
+        private boolean ready;
+
+        private boolean finished;
+
+        VariantsIterator(Map<K, Set<V>> keyValuesMap, SolverBudget budget) {
+            this.budget = budget;
+            this.keys = new ArrayList<>(keyValuesMap.size());
+            this.distinctValues = new ArrayList<>();
+            this.levelValues = new int[keyValuesMap.size()][];
+
+            Map<V, Integer> valueIds = new HashMap<>();
+            int level = 0;
+            for (Map.Entry<K, Set<V>> entry : keyValuesMap.entrySet()) {
+                keys.add(entry.getKey());
+                int[] ids = new int[entry.getValue().size()];
+                int i = 0;
+                for (V value : entry.getValue()) {
+                    Integer id = valueIds.get(value);
+                    if (id == null) {
+                        id = distinctValues.size();
+                        valueIds.put(value, id);
+                        distinctValues.add(value);
+                    }
+                    ids[i++] = id;
                 }
-                return;
+                levelValues[level++] = ids;
+            }
+
+            this.nextValueIndexes = new int[levelValues.length];
+            this.chosenValues = new int[levelValues.length];
+            this.usedValues = new boolean[distinctValues.size()];
+            Arrays.fill(chosenValues, -1);
+
+            // без уровней есть ровно один вариант - пустой
+            this.ready = levelValues.length == 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!ready && !finished) {
+                advance();
             }
 
-            Set<V> newBufSet = new HashSet<>(bufSet);
-            newBufSet.add(currValue);
+            return ready;
+        }
 
-            variantsFillingInRecursion(content, result, new HashMap<>(bufMap), newBufSet, currentLevelIndex + 1, 0);
+        @Override
+        public Map<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ready = false;
+            if (levelValues.length == 0) {
+                finished = true;
+                return new HashMap<>();
+            }
+
+            Map<K, V> variant = new HashMap<>();
+            for (int level = 0; level < levelValues.length; level++) {
+                variant.put(keys.get(level), distinctValues.get(chosenValues[level]));
+            }
+
+            return variant;
         }
 
-        if (!isLastValueInLevel) {
-            variantsFillingInRecursion(content, result, new HashMap<>(bufMap), new HashSet<>(bufSet), currentLevelIndex, currentValueIndex + 1);
+        private void advance() {
+            while (depth >= 0) {
+                budget.check();
+                if (chosenValues[depth] >= 0) {
+                    usedValues[chosenValues[depth]] = false;
+                    chosenValues[depth] = -1;
+                }
+
+                int[] values = levelValues[depth];
+                int i = nextValueIndexes[depth];
+                while (i < values.length && usedValues[values[i]]) {
+                    i++;
+                }
+
+                if (i == values.length) {
+                    nextValueIndexes[depth] = 0;
+                    depth--;
+                    continue;
+                }
+
+                chosenValues[depth] = values[i];
+                usedValues[values[i]] = true;
+                nextValueIndexes[depth] = i + 1;
+
+                if (depth == levelValues.length - 1) {
+                    ready = true;
+                    return;
+                }
+                depth++;
+            }
+
+            finished = true;
         }
     }
 }
@@ -1,10 +1,38 @@
 package com.smolka;
 
+import com.smolka.impl.CachedSudoku;
+import com.smolka.impl.DancingLinksSudokuImpl;
+import com.smolka.impl.SolutionCache;
+import com.smolka.impl.SudokuBatchSolver;
+import com.smolka.impl.SudokuGenerator;
 import com.smolka.impl.SudokuImpl;
+import com.smolka.impl.SudokuSession;
+import com.smolka.utils.CanonicalForm;
+import com.smolka.utils.Hint;
+import com.smolka.utils.PuzzleFormat;
+import com.smolka.utils.PuzzleReader;
+import com.smolka.utils.PuzzleWriter;
+import com.smolka.utils.SolverBudget;
+import com.smolka.utils.SolverPhase;
+import com.smolka.utils.SolverStats;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 public class SudokuTest {
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
 
     @Test
     public void test_valid() {
@@ -71,6 +99,112 @@ public class SudokuTest {
     }
 
 
+    @Test
+    public void test_invalidWithCorrectSums() {
+        int[][] field = TestPuzzles.inkala();
+
+        // суммы по всем строкам, столбцам и квадратам верные, но в первых двух строках есть повторы
+        int[][] variantToCheck = {
+                { 8, 1, 2, 7, 6, 2, 6, 4, 9 },
+                { 9, 4, 3, 6, 7, 3, 1, 7, 5 },
+                { 6, 7, 5, 4, 9, 1, 2, 8, 3 },
+                { 1, 5, 4, 2, 3, 7, 8, 9, 6 },
+                { 3, 6, 9, 8, 4, 5, 7, 2, 1 },
+                { 2, 8, 7, 1, 6, 9, 5, 3, 4 },
+                { 5, 2, 1, 9, 7, 4, 3, 6, 8 },
+                { 4, 3, 8, 5, 2, 6, 9, 1, 7 },
+                { 7, 9, 6, 3, 1, 8, 4, 5, 2 }
+        };
+
+        Sudoku sudoku = new SudokuImpl(3, field);
+        boolean isValid = sudoku.checkVariant(variantToCheck);
+
+        assert !isValid;
+    }
+
+    @Test
+    public void test_checkVariants() {
+        int[][] field = TestPuzzles.inkala();
+        Sudoku sudoku = new SudokuImpl(3, field);
+        int[][] valid = new DancingLinksSudokuImpl(3, field).getVariant();
+        int[][] invalid = new int[9][];
+        for (int i = 0; i < 9; i++) {
+            invalid[i] = valid[(i + 3) % 9];
+        }
+
+        List<int[][]> variants = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            variants.add(i % 3 == 0 ? invalid : valid);
+        }
+        boolean[] result = sudoku.checkVariants(variants);
+
+        assert result.length == variants.size();
+        for (int i = 0; i < result.length; i++) {
+            assert result[i] == (i % 3 != 0);
+        }
+    }
+
+    @Test
+    public void test_batchSolving() {
+        int[][] first = TestPuzzles.inkala();
+        int[][] second = TestPuzzles.medium();
+
+        List<int[][]> puzzles = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            puzzles.add(i % 2 == 0 ? first : second);
+        }
+
+        List<int[][]> solutions;
+        try (SudokuBatchSolver solver = new SudokuBatchSolver(3, 4)) {
+            solutions = solver.solveAll(puzzles);
+        }
+
+        assert solutions.size() == puzzles.size();
+        for (int i = 0; i < puzzles.size(); i++) {
+            assert new SudokuImpl(3, puzzles.get(i)).checkVariant(solutions.get(i));
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void test_batchSolvingReaderError() throws Exception {
+        // первая строка читается при открытии, на второй поток чтения получает Error - конвейер не должен зависнуть
+        byte[] firstLine = "8..........36......7..9.2...5...7.......457.....1...3...1....68..85...1..9....4..\n".getBytes(StandardCharsets.US_ASCII);
+        InputStream input = new InputStream() {
+            private int position;
+
+            @Override
+            public int read() {
+                if (position < firstLine.length) {
+                    return firstLine[position++];
+                }
+                throw new AssertionError("broken input");
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) {
+                if (position < firstLine.length) {
+                    int count = Math.min(length, firstLine.length - position);
+                    System.arraycopy(firstLine, position, buffer, offset, count);
+                    position += count;
+                    return count;
+                }
+                throw new AssertionError("broken input");
+            }
+        };
+
+        RuntimeException failure = null;
+        try (PuzzleReader reader = PuzzleReader.open(input);
+             PuzzleWriter writer = new PuzzleWriter(new ByteArrayOutputStream(), PuzzleFormat.TEXT, 3);
+             SudokuBatchSolver solver = new SudokuBatchSolver(3, 2)) {
+            solver.solve(reader, writer);
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+
+        assert failure != null;
+        assert failure.getCause() instanceof AssertionError;
+    }
+
     @Test
     public void test_finding2() {
         int[][] field = {
@@ -126,4 +260,342 @@ public class SudokuTest {
         boolean isValid = sudoku.checkVariant(variant);
         assert  isValid;
     }
+
+    @Test
+    public void test_solverStats() {
+        int[][] field = TestPuzzles.inkala();
+        SolverStats stats = new SolverStats();
+        Sudoku sudoku = new SudokuImpl(3, field, stats);
+
+        assert sudoku.checkVariant(sudoku.getVariant());
+        assert stats.getPhaseNanos(SolverPhase.TRAVERSAL) > 0;
+        assert !stats.getLayerBranches().isEmpty();
+        assert stats.getNodesVisited() > 0;
+        assert stats.getIntersections() > 0;
+    }
+
+    @Test
+    public void test_inversionBitsCap() {
+        // оценка инверсий чуть ниже MAX_ESTIMATED_INVERSION_BITS - строится дерево, и его инверсии не больше оценки
+        int[][] belowCap = {
+                { 0, 0, 2, 0, 0, 0, 0, 0, 0 },
+                { 9, 5, 0, 0, 0, 3, 4, 8, 0 },
+                { 0, 0, 6, 8, 1, 0, 0, 0, 0 },
+                { 0, 0, 0, 0, 0, 4, 0, 0, 1 },
+                { 1, 0, 0, 5, 0, 0, 0, 0, 0 },
+                { 2, 0, 9, 0, 7, 0, 0, 0, 4 },
+                { 0, 0, 0, 0, 0, 0, 0, 7, 0 },
+                { 0, 0, 0, 0, 0, 2, 0, 0, 0 },
+                { 6, 2, 0, 0, 0, 7, 0, 0, 3 },
+        };
+        SolverStats stats = new SolverStats();
+        Sudoku sudoku = new SudokuImpl(3, belowCap, stats);
+        assert sudoku.checkVariant(sudoku.getVariant());
+
+        List<Integer> branches = stats.getLayerBranches();
+        assert !branches.isEmpty();
+        long branchesSum = 0;
+        long inversionBits = 0;
+        for (int layerBranches : branches) {
+            inversionBits += 2 * layerBranches * branchesSum;
+            branchesSum += layerBranches;
+        }
+        assert inversionBits <= SudokuImpl.MAX_ESTIMATED_INVERSION_BITS;
+
+        // та же головоломка без одной подсказки: оценка чуть выше - дерево не строится, решает точное покрытие
+        int[][] aboveCap = {
+                { 0, 0, 2, 0, 0, 0, 0, 0, 0 },
+                { 9, 5, 0, 0, 0, 3, 4, 8, 0 },
+                { 0, 0, 6, 8, 1, 0, 0, 0, 0 },
+                { 0, 0, 0, 0, 0, 4, 0, 0, 1 },
+                { 1, 0, 0, 5, 0, 0, 0, 0, 0 },
+                { 2, 0, 9, 0, 7, 0, 0, 0, 4 },
+                { 0, 0, 0, 0, 0, 0, 0, 7, 0 },
+                { 0, 0, 0, 0, 0, 2, 0, 0, 0 },
+                { 6, 0, 0, 0, 0, 7, 0, 0, 3 },
+        };
+        stats = new SolverStats();
+        sudoku = new SudokuImpl(3, aboveCap, stats);
+        assert sudoku.checkVariant(sudoku.getVariant());
+        assert stats.getLayerBranches().isEmpty();
+        assert stats.getPhaseNanos(SolverPhase.DANCING_LINKS) > 0;
+    }
+
+    @Test
+    public void test_finding16() {
+        int[][] field = {
+                { 10, 16,  0,  0,  0,  0,  0,  0,  0,  0,  9,  0,  8,  0, 12,  0 },
+                {  0,  7,  0,  0,  0,  0, 14,  0,  0,  0, 13, 16, 11,  0,  0,  0 },
+                {  6,  0,  3, 13,  0,  0,  0,  0, 10,  0,  0, 12,  0,  2,  0,  0 },
+                {  0,  0,  8, 12,  4,  0,  7,  0,  0,  1,  0,  0,  6,  0, 16, 15 },
+                {  0,  3,  0,  0,  0, 11,  0,  1,  0,  0,  0,  0, 15,  0,  0,  0 },
+                {  4,  0,  0,  0, 15,  0,  0,  6,  5, 10,  0, 13,  0,  7,  0,  0 },
+                {  0,  8,  1,  0,  0,  2,  0,  4, 14,  0,  0,  0,  0, 12,  0,  0 },
+                { 13,  0,  0,  0,  5,  0,  0,  0,  0,  0,  0, 15,  0,  0,  0, 11 },
+                { 15, 11,  0,  6,  2,  0,  0,  0,  0,  0,  0,  0, 10,  0,  8,  0 },
+                {  0,  5,  0,  1,  0,  0,  0,  0, 16,  0,  0,  0, 13,  0,  0, 12 },
+                { 14,  0,  0,  0,  0, 10,  0,  0,  4, 12,  7,  0,  0, 11,  0,  0 },
+                {  0,  0,  0,  0,  9,  4,  5,  0,  0,  0,  0,  2,  3,  0, 14,  0 },
+                {  7,  9,  0, 10,  0,  0,  0,  0,  0, 15,  0,  0, 12,  0,  4,  0 },
+                {  3,  0, 14,  0, 12,  0, 11,  0,  0,  5,  6,  0,  0,  0, 15, 13 },
+                {  0, 13,  0,  0,  6,  1,  0,  0, 12, 16,  2,  0,  0, 14,  0,  0 },
+                { 16,  0,  0,  0,  0,  5,  0,  0,  9, 13,  0, 14,  0,  8,  0,  1 },
+        };
+        Sudoku sudoku = new SudokuImpl(4, field);
+        int[][] variant = sudoku.getVariant();
+
+        boolean isValid = sudoku.checkVariant(variant);
+        assert  isValid;
+    }
+
+    @Test
+    public void test_budget() {
+        int[][] field = TestPuzzles.inkala();
+        Sudoku sudoku = new SudokuImpl(3, field);
+        Sudoku dancingLinksSudoku = new DancingLinksSudokuImpl(3, field);
+
+        assert sudoku.getVariant(SolverBudget.ofSteps(100)).status() == SolveResult.Status.BUDGET_EXCEEDED;
+        assert dancingLinksSudoku.getVariant(SolverBudget.ofSteps(100)).status() == SolveResult.Status.BUDGET_EXCEEDED;
+
+        SolveResult result = sudoku.getVariant(Duration.ofMinutes(1));
+        assert result.isSolved();
+        assert sudoku.checkVariant(result.solution());
+        // после прерванного поиска структура точного покрытия восстановлена
+        assert dancingLinksSudoku.checkVariant(dancingLinksSudoku.getVariant());
+    }
+
+    @Test
+    public void test_budgetInterrupted() {
+        int[][] field = TestPuzzles.inkala();
+        Sudoku sudoku = new SudokuImpl(3, field);
+
+        Thread.currentThread().interrupt();
+        try {
+            assert sudoku.getVariant(SolverBudget.ofTimeout(Duration.ofMinutes(1))).status() == SolveResult.Status.BUDGET_EXCEEDED;
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    public void test_budgetUnsolvable() {
+        int[][] field = TestPuzzles.unsolvable2();
+
+        assert new SudokuImpl(2, field).getVariant(Duration.ofMinutes(1)).status() == SolveResult.Status.UNSOLVABLE;
+        assert new DancingLinksSudokuImpl(2, field).getVariant(Duration.ofMinutes(1)).status() == SolveResult.Status.UNSOLVABLE;
+    }
+
+    @Test
+    public void test_countSolutions() {
+        int[][] field = TestPuzzles.inkala();
+        assert new SudokuImpl(3, field).hasUniqueSolution();
+        assert new DancingLinksSudokuImpl(3, field).hasUniqueSolution();
+
+        // без одной подсказки решений становится больше - считаем до предела
+        field[0][0] = 0;
+        assert new SudokuImpl(3, field).countSolutions(5) == 5;
+        assert !new DancingLinksSudokuImpl(3, field).hasUniqueSolution();
+
+        assert new SudokuImpl(3, new int[9][9]).countSolutions(2) == 2;
+    }
+
+    @Test
+    public void test_generator() {
+        List<int[][]> puzzles = new SudokuGenerator(3, 1).generate(20, 30).toList();
+
+        assert puzzles.size() == 20;
+        for (int[][] puzzle : puzzles) {
+            int clues = 0;
+            for (int[] row : puzzle) {
+                for (int number : row) {
+                    clues += number != 0 ? 1 : 0;
+                }
+            }
+            assert clues >= 30;
+            assert new SudokuImpl(3, puzzle).hasUniqueSolution();
+        }
+
+        // тот же seed - те же головоломки
+        assert Arrays.deepEquals(puzzles.toArray(), new SudokuGenerator(3, 1).generate(20, 30).toArray());
+
+        // сложных 4x4 не бывает - отказ сразу, без попыток
+        IllegalArgumentException failure = null;
+        try {
+            new SudokuGenerator(2, 1).generate(5, SudokuGenerator.Difficulty.HARD);
+        } catch (IllegalArgumentException e) {
+            failure = e;
+        }
+        assert failure != null;
+    }
+
+    @Test
+    public void test_puzzleFormats() throws Exception {
+        for (int n : new int[] { 3, 4 }) {
+            List<int[][]> puzzles = new SudokuGenerator(n, 2).generate(n == 3 ? 30 : 3, 0).toList();
+
+            for (PuzzleFormat format : PuzzleFormat.values()) {
+                Path path = temporaryFolder.newFile().toPath();
+                try (PuzzleWriter writer = new PuzzleWriter(path, format, n)) {
+                    puzzles.forEach(writer::write);
+                }
+
+                int size = n * n;
+                int[] cells = new int[size * size];
+                try (PuzzleReader reader = PuzzleReader.open(path)) {
+                    assert reader.getFormat() == format;
+                    assert reader.getN() == n;
+                    for (int[][] puzzle : puzzles) {
+                        assert reader.next(cells);
+                        for (int row = 0; row < size; row++) {
+                            assert Arrays.equals(puzzle[row], 0, size, cells, row * size, row * size + size);
+                        }
+                    }
+                    assert !reader.next(cells);
+                    assert reader.getReadCount() == puzzles.size();
+                }
+
+                List<int[][]> solutions = new ArrayList<>(Collections.nCopies(puzzles.size(), null));
+                try (PuzzleReader reader = PuzzleReader.open(path); SudokuBatchSolver solver = new SudokuBatchSolver(n, 2)) {
+                    solver.solve(reader, result -> solutions.set((int) result.index(), result.solution()));
+                }
+                for (int i = 0; i < puzzles.size(); i++) {
+                    assert new SudokuImpl(n, puzzles.get(i)).checkVariant(solutions.get(i));
+                }
+
+                // конвейер пишет решения в порядке входа
+                Path solutionsPath = temporaryFolder.newFile().toPath();
+                try (PuzzleReader reader = PuzzleReader.open(path);
+                     PuzzleWriter writer = new PuzzleWriter(solutionsPath, format, n);
+                     SudokuBatchSolver solver = new SudokuBatchSolver(n, 3)) {
+                    assert solver.solve(reader, writer) == 0;
+                }
+                try (PuzzleReader reader = PuzzleReader.open(solutionsPath)) {
+                    for (int[][] solution : solutions) {
+                        assert reader.next(cells);
+                        for (int row = 0; row < size; row++) {
+                            assert Arrays.equals(solution[row], 0, size, cells, row * size, row * size + size);
+                        }
+                    }
+                    assert !reader.next(cells);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void test_solutionCache() {
+        int[][] field = TestPuzzles.inkala();
+
+        // изоморфная копия: полосы 0 и 2 переставлены, строки 3 и 4 тоже, столбцы 1 и 2, поле транспонировано, числа сдвинуты на 1
+        int[] rows = { 6, 7, 8, 4, 3, 5, 0, 1, 2 };
+        int[] columns = { 0, 2, 1, 3, 4, 5, 6, 7, 8 };
+        int[][] copy = new int[9][9];
+        for (int row = 0; row < 9; row++) {
+            for (int column = 0; column < 9; column++) {
+                int number = field[rows[column]][columns[row]];
+                copy[row][column] = number == 0 ? 0 : number % 9 + 1;
+            }
+        }
+
+        assert Arrays.equals(CanonicalForm.invariants(3, field), CanonicalForm.invariants(3, copy));
+
+        SolutionCache cache = new SolutionCache(8);
+        assert new CachedSudoku(3, field, cache).checkVariant(new CachedSudoku(3, field, cache).getVariant());
+        // та же головоломка находится без поиска канонической формы
+        assert new CachedSudoku(3, field, cache).checkVariant(new CachedSudoku(3, field, cache).getVariant());
+        assert cache.getMisses() == 1;
+        assert cache.getHits() == 1;
+        int[][] copySolution = new CachedSudoku(3, copy, cache).getVariant();
+        assert new SudokuImpl(3, copy).checkVariant(copySolution);
+        assert cache.getMisses() == 1;
+        assert cache.getHits() == 2;
+
+        int[][] unsolvable = new int[9][9];
+        unsolvable[0][0] = 1;
+        unsolvable[0][1] = 1;
+        assert new CachedSudoku(3, unsolvable, cache).getVariant() == null;
+        assert new CachedSudoku(3, unsolvable, cache).getVariant() == null;
+        assert cache.getHits() == 3;
+
+        // в кэше на одну запись первая головоломка вытесняется следующей
+        SolutionCache smallCache = new SolutionCache(1);
+        new CachedSudoku(3, field, smallCache).getVariant();
+        new CachedSudoku(3, unsolvable, smallCache).getVariant();
+        new CachedSudoku(3, field, smallCache).getVariant();
+        assert smallCache.getMisses() == 3;
+        assert smallCache.size() == 1;
+    }
+
+    @Test
+    public void test_session() {
+        int[][] field = TestPuzzles.easy();
+        SudokuSession session = new SudokuSession(3, field);
+        assert session.isSolvable();
+        assert session.getCandidates(0, 2) == ((1 << 0) | (1 << 1) | (1 << 3));
+
+        // 4 в (0, 2) - верное число, 1 и 2 ведут в тупик, 5 - повтор в строке
+        assert session.set(0, 2, 4);
+        assert session.getCandidates(0, 3) == ((1 << 1) | (1 << 5)) && session.isSolvable();
+        session.set(0, 2, 1);
+        assert !session.isSolvable();
+        assert !session.set(0, 2, 5) && session.hasConflicts();
+        assert session.clear(0, 2);
+        assert !session.hasConflicts() && session.getCandidates(0, 2) == ((1 << 0) | (1 << 1) | (1 << 3));
+
+        int[][] solution = session.getSolution();
+        assert new SudokuImpl(3, field).checkVariant(solution);
+        for (int row = 0; row < 9; row++) {
+            for (int column = 0; column < 9; column++) {
+                if (!session.isGiven(row, column)) {
+                    session.set(row, column, solution[row][column]);
+                }
+            }
+        }
+        assert session.isSolved();
+    }
+
+    @Test
+    public void test_hint() {
+        int[][] field = TestPuzzles.easy();
+        int[][] solution = new DancingLinksSudokuImpl(3, field).getVariant();
+
+        // подсказки по одной, пока поле не заполнится: каждая совпадает с единственным решением
+        int[][] current = TestPuzzles.copyOf(field);
+        Hint hint;
+        while ((hint = new SudokuImpl(3, current).hint()) != null) {
+            assert current[hint.row()][hint.column()] == 0;
+            assert solution[hint.row()][hint.column()] == hint.number();
+            current[hint.row()][hint.column()] = hint.number();
+        }
+        assert Arrays.deepEquals(current, solution);
+
+        Hint first = new DancingLinksSudokuImpl(3, field).hint();
+        assert first.equals(new SudokuImpl(3, field).hint());
+        assert first.technique() == Hint.Technique.NAKED_SINGLE;
+
+        SudokuSession session = new SudokuSession(3, field);
+        assert first.equals(session.hint());
+        // при повторе в строке подсказки нет
+        session.set(0, 2, 5);
+        assert session.hint() == null;
+    }
+
+    @Test
+    public void test_dancingLinksFinding() {
+        int[][] field = TestPuzzles.inkala();
+        Sudoku sudoku = new DancingLinksSudokuImpl(3, field);
+        int[][] variant = sudoku.getVariant();
+
+        assert sudoku.checkVariant(variant);
+        // структура переиспользуется - повторный вызов дает то же решение
+        assert Arrays.deepEquals(variant, sudoku.getVariant());
+    }
+
+    @Test
+    public void test_dancingLinksNoSolution() {
+        int[][] field = TestPuzzles.unsolvable2();
+        Sudoku sudoku = new DancingLinksSudokuImpl(2, field);
+
+        assert sudoku.getVariant() == null;
+    }
 }
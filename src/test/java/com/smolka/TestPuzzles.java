@@ -0,0 +1,78 @@
+package com.smolka;
+
+// головоломки, общие для тестов. каждый вызов возвращает новую копию - тесты могут менять поле
+final class TestPuzzles {
+
+    // "самая сложная" головоломка Инкалы, решение единственное
+    private static final int[][] INKALA = {
+            { 8, 0, 0, 0, 0, 0, 0, 0, 0 },
+            { 0, 0, 3, 6, 0, 0, 0, 0, 0 },
+            { 0, 7, 0, 0, 9, 0, 2, 0, 0 },
+            { 0, 5, 0, 0, 0, 7, 0, 0, 0 },
+            { 0, 0, 0, 0, 4, 5, 7, 0, 0 },
+            { 0, 0, 0, 1, 0, 0, 0, 3, 0 },
+            { 0, 0, 1, 0, 0, 0, 0, 6, 8 },
+            { 0, 0, 8, 5, 0, 0, 0, 1, 0 },
+            { 0, 9, 0, 0, 0, 0, 4, 0, 0 },
+    };
+
+    private static final int[][] MEDIUM = {
+            { 0, 7, 0, 0, 0, 6, 0, 0, 0 },
+            { 0, 4, 0, 8, 0, 0, 0, 0, 6 },
+            { 6, 5, 0, 0, 7, 0, 0, 9, 0 },
+            { 0, 0, 0, 2, 0, 9, 0, 0, 0 },
+            { 0, 0, 1, 0, 8, 0, 0, 7, 9 },
+            { 0, 0, 0, 0, 3, 0, 1, 6, 0 },
+            { 0, 0, 6, 0, 0, 0, 2, 5, 0 },
+            { 0, 1, 9, 0, 0, 0, 0, 0, 0 },
+            { 7, 0, 4, 5, 0, 0, 0, 1, 3 }
+    };
+
+    private static final int[][] EASY = {
+            { 5, 3, 0, 0, 7, 0, 0, 0, 0 },
+            { 6, 0, 0, 1, 9, 5, 0, 0, 0 },
+            { 0, 9, 8, 0, 0, 0, 0, 6, 0 },
+            { 8, 0, 0, 0, 6, 0, 0, 0, 3 },
+            { 4, 0, 0, 8, 0, 3, 0, 0, 1 },
+            { 7, 0, 0, 0, 2, 0, 0, 0, 6 },
+            { 0, 6, 0, 0, 0, 0, 2, 8, 0 },
+            { 0, 0, 0, 4, 1, 9, 0, 0, 5 },
+            { 0, 0, 0, 0, 8, 0, 0, 7, 9 }
+    };
+
+    // 4x4 без решения: 3 и 4 в столбце 2 не дают поставить их в строку 0
+    private static final int[][] UNSOLVABLE_2 = {
+            { 1, 2, 0, 0 },
+            { 0, 0, 0, 0 },
+            { 0, 0, 3, 0 },
+            { 0, 0, 4, 0 }
+    };
+
+    private TestPuzzles() {
+    }
+
+    static int[][] inkala() {
+        return copyOf(INKALA);
+    }
+
+    static int[][] medium() {
+        return copyOf(MEDIUM);
+    }
+
+    static int[][] easy() {
+        return copyOf(EASY);
+    }
+
+    static int[][] unsolvable2() {
+        return copyOf(UNSOLVABLE_2);
+    }
+
+    static int[][] copyOf(int[][] field) {
+        int[][] copy = new int[field.length][];
+        for (int row = 0; row < field.length; row++) {
+            copy[row] = field[row].clone();
+        }
+
+        return copy;
+    }
+}
@@ -0,0 +1,96 @@
+package com.smolka.utils;
+
+import org.junit.Test;
+
+public class CandidatePropagationTest {
+
+    @Test
+    public void test_nakedSingle() {
+        int[][] field = new int[9][9];
+        field[0] = new int[] { 1, 2, 3, 4, 5, 6, 7, 8, 0 };
+        CandidateGrid grid = CandidateGrid.of(3, field);
+
+        Hint hint = new CandidatePropagation(grid.copy()).nextHint();
+        assert hint.equals(new Hint(0, 8, 9, Hint.Technique.NAKED_SINGLE));
+
+        assert new CandidatePropagation(grid).propagateSingles();
+        assert grid.getValue(0, 8) == 9;
+    }
+
+    @Test
+    public void test_hiddenSingle() {
+        // единицы закрывают для 1 строки 1 и 2 и столбцы 1 и 2: в квадрате 0 (и в строке 0) ей остается только клетка (0, 0)
+        int[][] field = new int[9][9];
+        field[1][4] = 1;
+        field[2][7] = 1;
+        field[4][1] = 1;
+        field[7][2] = 1;
+        CandidateGrid grid = CandidateGrid.of(3, field);
+        assert Integer.bitCount(grid.getCandidates(0, 0)) > 1;
+
+        Hint hint = new CandidatePropagation(grid.copy()).nextHint();
+        assert hint.equals(new Hint(0, 0, 1, Hint.Technique.HIDDEN_SINGLE));
+
+        assert new CandidatePropagation(grid).propagateSingles();
+        assert grid.getValue(0, 0) == 1;
+    }
+
+    @Test
+    public void test_pointing() {
+        // в квадрате 0 пятерка осталась только в строке 0 - из остальной строки 0 она уходит, в других строках остается
+        CandidateGrid grid = new CandidateGrid(3);
+        int bit = CandidateGrid.bitOf(5);
+        for (int row = 1; row < 3; row++) {
+            for (int column = 0; column < 3; column++) {
+                grid.removeCandidates(row, column, bit);
+            }
+        }
+
+        assert new CandidatePropagation(grid).propagate();
+        assert (grid.getCandidates(0, 0) & bit) != 0;
+        assert (grid.getCandidates(0, 2) & bit) != 0;
+        for (int column = 3; column < 9; column++) {
+            assert (grid.getCandidates(0, column) & bit) == 0;
+            assert (grid.getCandidates(1, column) & bit) != 0;
+        }
+    }
+
+    @Test
+    public void test_boxLineReduction() {
+        // в строке 0 пятерка осталась только внутри квадрата 0 - из строк 1 и 2 этого квадрата она уходит
+        CandidateGrid grid = new CandidateGrid(3);
+        int bit = CandidateGrid.bitOf(5);
+        for (int column = 3; column < 9; column++) {
+            grid.removeCandidates(0, column, bit);
+        }
+
+        assert new CandidatePropagation(grid).propagate();
+        for (int column = 0; column < 3; column++) {
+            assert (grid.getCandidates(0, column) & bit) != 0;
+            assert (grid.getCandidates(1, column) & bit) == 0;
+            assert (grid.getCandidates(2, column) & bit) == 0;
+        }
+        assert (grid.getCandidates(1, 3) & bit) != 0;
+        assert (grid.getCandidates(2, 8) & bit) != 0;
+    }
+
+    @Test
+    public void test_contradiction() {
+        // строка 0 занимает 1..8, девятка в столбце 8 - клетке (0, 8) нечего поставить
+        int[][] field = new int[9][9];
+        field[0] = new int[] { 1, 2, 3, 4, 5, 6, 7, 8, 0 };
+        field[5][8] = 9;
+        assert !new CandidatePropagation(CandidateGrid.of(3, field)).propagate();
+        assert !new CandidatePropagation(CandidateGrid.of(3, field)).propagateSingles();
+        assert new CandidatePropagation(CandidateGrid.of(3, field)).nextHint() == null;
+
+        // кандидаты у всех клеток есть, но девятке в строке 0 места нет
+        field = new int[9][9];
+        field[0][6] = 1;
+        field[0][7] = 2;
+        field[0][8] = 3;
+        field[1][1] = 9;
+        field[2][4] = 9;
+        assert !new CandidatePropagation(CandidateGrid.of(3, field)).propagateSingles();
+    }
+}
@@ -0,0 +1,96 @@
+package com.smolka.utils;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+public class GeometryTest {
+
+    @Test
+    public void test_cells() {
+        Geometry geometry = Geometry.of(3);
+        assert geometry.getSize() == 9;
+        assert geometry.getCellsCount() == 81;
+
+        int cell = geometry.getCell(4, 7);
+        assert cell == 43;
+        assert geometry.getRow(cell) == 4;
+        assert geometry.getColumn(cell) == 7;
+        assert geometry.getSquare(cell) == 5;
+        assert geometry.getSquare(4, 7) == 5;
+        assert geometry.getIndexInSquare(cell) == 4;
+        assert geometry.getSquareStartRow(5) == 3;
+        assert geometry.getSquareStartColumn(5) == 6;
+
+        assert geometry.contains(8, 0);
+        assert !geometry.contains(9, 0);
+        assert !geometry.contains(0, -1);
+    }
+
+    @Test
+    public void test_units() {
+        for (int n = 2; n <= 4; n++) {
+            Geometry geometry = Geometry.of(n);
+            int size = geometry.getSize();
+            int[][] units = geometry.getUnits();
+            assert units.length == 3 * size;
+
+            for (int index = 0; index < size; index++) {
+                assert units[index] == geometry.getRowCells(index);
+                assert units[size + index] == geometry.getColumnCells(index);
+                assert units[2 * size + index] == geometry.getSquareCells(index);
+
+                for (int slot = 0; slot < size; slot++) {
+                    assert geometry.getRow(geometry.getRowCells(index)[slot]) == index;
+                    assert geometry.getColumn(geometry.getColumnCells(index)[slot]) == index;
+
+                    int squareCell = geometry.getSquareCells(index)[slot];
+                    assert geometry.getSquare(squareCell) == index;
+                    assert geometry.getIndexInSquare(squareCell) == slot;
+                }
+            }
+        }
+    }
+
+    @Test
+    public void test_peers() {
+        for (int n = 2; n <= 4; n++) {
+            Geometry geometry = Geometry.of(n);
+            int size = geometry.getSize();
+            for (int cell = 0; cell < geometry.getCellsCount(); cell++) {
+                Set<Integer> expected = new HashSet<>();
+                for (int other = 0; other < geometry.getCellsCount(); other++) {
+                    if (other != cell && (geometry.getRow(other) == geometry.getRow(cell)
+                            || geometry.getColumn(other) == geometry.getColumn(cell)
+                            || geometry.getSquare(other) == geometry.getSquare(cell))) {
+                        expected.add(other);
+                    }
+                }
+
+                int[] peers = geometry.getPeers(cell);
+                Set<Integer> actual = new HashSet<>();
+                for (int peer : peers) {
+                    actual.add(peer);
+                }
+                assert peers.length == 2 * (size - 1) + (n - 1) * (n - 1);
+                assert actual.size() == peers.length;
+                assert actual.equals(expected);
+            }
+        }
+    }
+
+    @Test
+    public void test_sharedInstance() {
+        assert Geometry.of(3) == Geometry.of(3);
+        assert Geometry.of(3) != Geometry.of(4);
+
+        RuntimeException failure = null;
+        try {
+            Geometry.of(0);
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        assert failure != null;
+    }
+}
@@ -0,0 +1,39 @@
+package com.smolka.utils;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+public class PositionTest {
+
+    @Test
+    public void test_interning() {
+        assert Position.of(0, 0) == Position.of(0, 0);
+        assert Position.of(24, 17) == Position.of(24, 17);
+        assert Position.of(63, 63) == Position.of(63, 63);
+        assert Position.of(3, 5) != Position.of(5, 3);
+
+        // вне кэша - новые объекты, но равные
+        assert Position.of(64, 0) != Position.of(64, 0);
+        assert Position.of(64, 0).equals(Position.of(64, 0));
+        assert Position.of(-1, 2).equals(new Position(-1, 2));
+
+        Position position = Position.of(7, 2);
+        assert position.row() == 7;
+        assert position.column() == 2;
+        assert position.equals(new Position(7, 2));
+        assert position.hashCode() == new Position(7, 2).hashCode();
+    }
+
+    @Test
+    public void test_hashCode() {
+        // в пределах поля 25x25 хэши разных позиций не совпадают
+        Set<Integer> hashes = new HashSet<>();
+        for (int row = 0; row < 25; row++) {
+            for (int column = 0; column < 25; column++) {
+                assert hashes.add(Position.of(row, column).hashCode());
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.smolka.utils;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class UniqueSequenceLayeredTreeTest {
+
+    @Test
+    public void test_parallelTraversal() {
+        // уровни - строки латинского квадрата 5x5: по 120 ветвей на уровень, параллельный обход делит корни между задачами
+        UniqueSequenceLayeredTree<Position, Integer> tree = newLatinSquareTree(5);
+
+        Set<List<Map<Position, Integer>>> sequential = new HashSet<>();
+        assert !tree.traverse((adjacencyGroup, variants) -> !sequential.add(variants));
+
+        Set<List<Map<Position, Integer>>> parallel = ConcurrentHashMap.newKeySet();
+        assert !tree.traverseInParallel((adjacencyGroup, variants) -> !parallel.add(variants));
+
+        // латинских квадратов 5x5 - 161280
+        assert sequential.size() == 161280;
+        assert parallel.equals(sequential);
+
+        assert tree.traverse((adjacencyGroup, variants) -> true);
+        assert tree.traverseInParallel((adjacencyGroup, variants) -> true);
+    }
+
+    @Test
+    public void test_parallelTraversalFewRoots() {
+        // меньше MIN_PARALLEL_ROOTS корней - обход в вызывающем потоке, результат тот же
+        UniqueSequenceLayeredTree<Position, Integer> tree = newLatinSquareTree(3);
+
+        Set<List<Map<Position, Integer>>> sequential = new HashSet<>();
+        tree.traverse((adjacencyGroup, variants) -> !sequential.add(variants));
+
+        Set<List<Map<Position, Integer>>> parallel = ConcurrentHashMap.newKeySet();
+        tree.traverseInParallel((adjacencyGroup, variants) -> !parallel.add(variants));
+
+        assert sequential.size() == 12;
+        assert parallel.equals(sequential);
+    }
+
+    private UniqueSequenceLayeredTree<Position, Integer> newLatinSquareTree(int size) {
+        Set<Integer> numbers = new HashSet<>();
+        for (int number = 1; number <= size; number++) {
+            numbers.add(number);
+        }
+
+        UniqueSequenceLayeredTreeInitializationParameters<Position, Integer> parameters = new UniqueSequenceLayeredTreeInitializationParameters<>((p1, p2) -> p1.column() == p2.column());
+        for (int row = 0; row < size; row++) {
+            Map<Position, Set<Integer>> rowValues = new HashMap<>();
+            for (int column = 0; column < size; column++) {
+                rowValues.put(Position.of(row, column), numbers);
+            }
+            parameters.addLayerInitializationInfo(Position.of(row, 0), rowValues);
+        }
+
+        UniqueSequenceLayeredTree<Position, Integer> tree = new UniqueSequenceLayeredTree<>();
+        assert tree.initialize(parameters);
+
+        return tree;
+    }
+}
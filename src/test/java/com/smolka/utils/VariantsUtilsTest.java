@@ -0,0 +1,44 @@
+package com.smolka.utils;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class VariantsUtilsTest {
+
+    @Test
+    public void test_allPermutations() {
+        Map<Integer, Set<Integer>> keyValuesMap = new LinkedHashMap<>();
+        for (int key = 0; key < 5; key++) {
+            keyValuesMap.put(key, Set.of(1, 2, 3, 4, 5));
+        }
+
+        List<Map<Integer, Integer>> variants = VariantsUtils.getAllVariants(keyValuesMap);
+
+        assert variants.size() == 120;
+        assert new HashSet<>(variants).size() == 120;
+        for (Map<Integer, Integer> variant : variants) {
+            assert new HashSet<>(variant.values()).size() == 5;
+        }
+    }
+
+    @Test
+    public void test_restrictedValues() {
+        Map<String, Set<Integer>> keyValuesMap = new LinkedHashMap<>();
+        keyValuesMap.put("a", Set.of(1, 2));
+        keyValuesMap.put("b", Set.of(1, 2));
+        keyValuesMap.put("c", Set.of(1, 2, 3));
+
+        assert VariantsUtils.streamVariants(keyValuesMap).count() == 2;
+
+        keyValuesMap.put("d", Set.of(1, 2));
+        Iterator<Map<String, Integer>> variants = VariantsUtils.iterateVariants(keyValuesMap);
+
+        assert !variants.hasNext();
+    }
+}